@@ -1,20 +1,46 @@
 package com.agenda;
 
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.Database;
+import com.agenda.model.Compromisso;
+import com.agenda.ui.AsyncDb;
+import com.agenda.ui.ScreenCache;
+import com.agenda.util.ReminderScheduler;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.time.Clock;
 
 public class MainApp extends Application {
+    private ReminderScheduler reminders;
+
     @Override
     public void start(Stage stage) throws IOException {
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/menu.fxml"));
-        Scene scene = new Scene(loader.load(), 700, 450);
-        stage.setTitle("Agenda - Menu");
-        stage.setScene(scene);
+        ScreenCache.show(stage, "/menu.fxml", "Agenda - Menu", 700, 450);
         stage.show();
+
+        reminders = new ReminderScheduler(new CompromissoDAO(), Clock.systemDefaultZone());
+        reminders.addListener(c -> Platform.runLater(() -> showReminder(stage, c)));
+        reminders.start();
+    }
+
+    // non-modal, so several reminders can be on screen without blocking the app
+    private static void showReminder(Stage owner, Compromisso c) {
+        Alert a = new Alert(Alert.AlertType.INFORMATION, c.toString());
+        a.initOwner(owner);
+        a.setTitle("Lembrete");
+        a.setHeaderText("Compromisso às " + c.getDateTime().toLocalTime());
+        a.show();
+    }
+
+    @Override
+    public void stop() {
+        if (reminders != null) reminders.stop();
+        AsyncDb.shutdown();
+        Database.shutdown();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,177 @@
+package com.agenda.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Escrita em lote compartilhada pelos DAOs: uma conexão de escrita, um PreparedStatement e
+ * addBatch/executeBatch dentro de uma transação explícita (um fsync por commit, não por linha).
+ */
+final class Batches {
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    private Batches() {
+    }
+
+    /**
+     * Insere as linhas de {@code rows} e atribui a cada uma o id gerado. Com um único escritor e
+     * AUTOINCREMENT os ids de um executeBatch são consecutivos e terminam em last_insert_rowid(),
+     * então não é preciso um getGeneratedKeys por linha.
+     * <p>
+     * Cada bloco de {@code commitSize} linhas é lido de {@code rows} (por exemplo, do CSV) antes de
+     * pegar a conexão de escrita, que é devolvida a cada commit: outras escritas esperam no máximo
+     * um bloco, não o arquivo inteiro.
+     *
+     * @return linhas gravadas (já confirmadas); se ocorrer um erro, o lote em andamento é desfeito
+     * e o valor devolvido cobre apenas os lotes confirmados antes dele
+     */
+    static <T> int insert(String sql, Iterator<? extends T> rows, int commitSize, Binder<? super T> binder, BiConsumer<? super T, Integer> setId) {
+        return insert(sql, rows, commitSize, binder, setId, null);
+    }
+
+    /**
+     * Como {@link #insert(String, Iterator, int, Binder, BiConsumer)}, mas um bloco que falha (ex.:
+     * violação de UNIQUE ou de chave estrangeira) é refeito linha a linha, em uma transação: as linhas
+     * que o banco recusa são passadas a {@code rejected} com o erro e as demais são gravadas. Se nem
+     * isso for possível (ex.: a conexão de escrita não vem), todas as linhas do bloco vão para
+     * {@code rejected} e a inserção para. As rejeições de um bloco são informadas antes de ler a
+     * próxima linha de {@code rows}.
+     */
+    static <T> int insert(String sql, Iterator<? extends T> rows, int commitSize, Binder<? super T> binder,
+                          BiConsumer<? super T, Integer> setId, BiConsumer<? super T, SQLException> rejected) {
+        int size = Math.max(1, commitSize);
+        int committed = 0;
+        List<T> batch = new ArrayList<>(Math.min(size, 10_000));
+        while (rows.hasNext()) {
+            batch.clear();
+            while (batch.size() < size && rows.hasNext()) batch.add(rows.next());
+            if (insertBlock(sql, batch, binder, setId)) {
+                committed += batch.size();
+                continue;
+            }
+            if (rejected == null) break;
+            int inserted = insertEach(sql, batch, binder, setId, rejected);
+            if (inserted < 0) break;
+            committed += inserted;
+        }
+        return committed;
+    }
+
+    // um bloco, uma transação e uma passagem pela conexão de escrita
+    private static <T> boolean insertBlock(String sql, List<T> batch, Binder<? super T> binder, BiConsumer<? super T, Integer> setId) {
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             Statement st = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            try {
+                for (T row : batch) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                }
+                flush(conn, ps, st, batch, setId);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * O bloco que falhou, uma linha por INSERT na mesma transação: no SQLite uma violação de
+     * restrição desfaz só o comando, não a transação. Devolve as linhas gravadas, ou -1 se a
+     * transação inteira falhou (todas as linhas do bloco são então rejeitadas).
+     */
+    private static <T> int insertEach(String sql, List<T> batch, Binder<? super T> binder,
+                                      BiConsumer<? super T, Integer> setId, BiConsumer<? super T, SQLException> rejected) {
+        List<T> inserted = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        List<T> failed = new ArrayList<>();
+        List<SQLException> errors = new ArrayList<>();
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             Statement st = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            try {
+                for (T row : batch) {
+                    try {
+                        binder.bind(ps, row);
+                        ps.executeUpdate();
+                    } catch (SQLException e) {
+                        failed.add(row);
+                        errors.add(e);
+                        continue;
+                    }
+                    try (ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+                        rs.next();
+                        ids.add(rs.getInt(1));
+                    }
+                    inserted.add(row);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            for (T row : batch) rejected.accept(row, e);
+            return -1;
+        }
+        // only once the commit went through
+        for (int i = 0; i < inserted.size(); i++) setId.accept(inserted.get(i), ids.get(i));
+        for (int i = 0; i < failed.size(); i++) rejected.accept(failed.get(i), errors.get(i));
+        return inserted.size();
+    }
+
+    /**
+     * Executa {@code sql} uma vez para cada elemento, em lote e em uma única transação:
+     * ou todas as linhas são gravadas, ou nenhuma.
+     */
+    static <T> boolean execute(String sql, Collection<? extends T> rows, Binder<? super T> binder) {
+        if (rows.isEmpty()) return true;
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            try {
+                for (T row : rows) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private static <T> void flush(Connection conn, PreparedStatement ps, Statement st, List<T> batch, BiConsumer<? super T, Integer> setId) throws SQLException {
+        ps.executeBatch();
+        long last;
+        try (ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+            rs.next();
+            last = rs.getLong(1);
+        }
+        conn.commit();
+        long first = last - batch.size() + 1;
+        for (int i = 0; i < batch.size(); i++) setId.accept(batch.get(i), (int) (first + i));
+    }
+}
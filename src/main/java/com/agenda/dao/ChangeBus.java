@@ -0,0 +1,94 @@
+package com.agenda.dao;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Avisos de alteração publicados pelos DAOs depois de cada escrita: quais ids de qual tabela foram
+ * inseridos, alterados ou excluídos. {@link Kind#RESET} indica que a tabela mudou de forma que não
+ * cabe em uma lista de ids (importação em lote, exclusão em cascata) e deve ser recarregada.
+ * <p>
+ * Os ouvintes rodam na thread que fez a escrita (normalmente a do {@code AsyncDb}); quem mexe na UI
+ * deve repassar para a thread de UI. Uma escrita feita dentro de {@link #as} leva a origem informada,
+ * para que a tela que a fez possa ignorar o próprio aviso.
+ */
+public final class ChangeBus {
+    public enum Table { CONTATOS, COMPROMISSOS }
+
+    public enum Kind { INSERTED, UPDATED, DELETED, RESET }
+
+    public static final class Change {
+        public final Table table;
+        public final Kind kind;
+        public final Object origin;
+        private final int[] ids;
+
+        Change(Table table, Kind kind, Object origin, int[] ids) {
+            this.table = table;
+            this.kind = kind;
+            this.origin = origin;
+            this.ids = ids;
+        }
+
+        /** Ids afetados (vazio para RESET). */
+        public int[] ids() {
+            return ids.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Change[" + table + " " + kind + " " + Arrays.toString(ids) + "]";
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Consumer<Change>> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Object> ORIGIN = new ThreadLocal<>();
+
+    private ChangeBus() {}
+
+    /** Registra um ouvinte; o Runnable devolvido cancela o registro. */
+    public static Runnable subscribe(Consumer<Change> listener) {
+        LISTENERS.add(listener);
+        return () -> LISTENERS.remove(listener);
+    }
+
+    /** Executa {@code work} marcando as alterações publicadas por ele com {@code origin}. */
+    public static <T> T as(Object origin, Supplier<T> work) {
+        Object previous = ORIGIN.get();
+        ORIGIN.set(origin);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) ORIGIN.remove();
+            else ORIGIN.set(previous);
+        }
+    }
+
+    static void publish(Table table, Kind kind, int... ids) {
+        if (LISTENERS.isEmpty()) return;
+        Change change = new Change(table, kind, ORIGIN.get(), ids);
+        for (Consumer<Change> l : LISTENERS) {
+            try {
+                l.accept(change);
+            } catch (RuntimeException e) {
+                // um ouvinte com erro não deve desfazer a escrita nem impedir os outros
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static void publish(Table table, Kind kind, Collection<Integer> ids) {
+        if (LISTENERS.isEmpty()) return;
+        int[] a = new int[ids.size()];
+        int i = 0;
+        for (Integer id : ids) a[i++] = id;
+        publish(table, kind, a);
+    }
+
+    static void reset(Table table) {
+        publish(table, Kind.RESET);
+    }
+}
@@ -1,20 +1,67 @@
 package com.agenda.dao;
 
 import com.agenda.model.Compromisso;
+import com.agenda.model.Contagem;
+import com.agenda.model.Recorrencia;
 
 import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 
 public class CompromissoDAO {
-    private static final DateTimeFormatter F = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String UPDATE_SQL = "UPDATE compromissos SET contato_id = ?, datetime = ?, local = ?, online = ?, descricao = ? WHERE id = ?";
+    private static final Batches.Binder<Compromisso> UPDATE_BINDER = (ps, c) -> {
+        ps.setInt(1, c.getContatoId());
+        setDateTime(ps, 2, c.getDateTime());
+        ps.setString(3, c.getLocal());
+        ps.setBoolean(4, c.isOnline());
+        ps.setString(5, c.getDescricao());
+        ps.setInt(6, c.getId());
+    };
+    // usada quando o modo write-behind está ligado (ver WriteBehindBuffer)
+    private static final WriteBehindBuffer.Table<Compromisso> TABLE = new WriteBehindBuffer.Table<>("compromissos",
+            UPDATE_SQL, UPDATE_BINDER, "DELETE FROM compromissos WHERE id = ?");
+    // compartilhado entre as telas; invalidado por toda escrita feita por este DAO
+    private static final EntityCache<Compromisso> CACHE = new EntityCache<>(Integer.getInteger("agenda.cache.compromissos", 10_000),
+            c -> new Compromisso(c.getId(), c.getContatoId(), c.getDateTime(), c.getLocal(), c.isOnline(), c.getDescricao()));
+
+    /**
+     * Duração considerada para cada compromisso na detecção de conflitos: a tabela guarda só o início,
+     * então todo compromisso ocupa [datetime, datetime + DURACAO). Ajustável com
+     * {@code -Dagenda.compromisso.duracaoMinutos}.
+     */
+    public static final Duration DURACAO = Duration.ofMinutes(Math.max(1, Long.getLong("agenda.compromisso.duracaoMinutos", 60)));
+
+    /** Acertos, faltas e remoções do cache de compromissos. */
+    public static EntityCache.Stats cacheStats() {
+        return CACHE.stats();
+    }
+
+    // chamado quando contatos são excluídos (cascata)
+    static void invalidateCache() {
+        CACHE.invalidateAll();
+    }
 
     public List<Compromisso> findAll() {
         List<Compromisso> list = new ArrayList<>();
         String sql = "SELECT id, contato_id, datetime, local, online, descricao FROM compromissos ORDER BY datetime";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 Compromisso c = mapRow(rs);
                 list.add(c);
@@ -28,7 +75,7 @@ public class CompromissoDAO {
     public List<Compromisso> findByContatoId(int contatoId) {
         List<Compromisso> list = new ArrayList<>();
         String sql = "SELECT id, contato_id, datetime, local, online, descricao FROM compromissos WHERE contato_id = ? ORDER BY datetime";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, contatoId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -41,12 +88,568 @@ public class CompromissoDAO {
         return list;
     }
 
+    /**
+     * Compromissos com datetime em [from, to), opcionalmente de um único contato, ordenados por (datetime, id).
+     * from/to nulos não limitam o intervalo.
+     */
+    public List<Compromisso> findBetween(LocalDateTime from, LocalDateTime to, Integer contatoId) {
+        return findPage(from, to, contatoId, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Uma página de até {@code limit} compromissos em [from, to), começando logo depois de {@code after}
+     * (paginação por chave em (datetime, id), usando o índice em vez de OFFSET).
+     * Passe {@code null} em after para a primeira página e {@link Cursor#after(Compromisso)} do último item
+     * recebido para as seguintes.
+     */
+    public List<Compromisso> findPage(LocalDateTime from, LocalDateTime to, Integer contatoId, Cursor after, int limit) {
+        return findPage(from, to, contatoId, false, after, limit);
+    }
+
+    /**
+     * Igual a {@link #findPage(LocalDateTime, LocalDateTime, Integer, Cursor, int)}, em ordem crescente
+     * ou decrescente de (datetime, id).
+     */
+    public List<Compromisso> findPage(LocalDateTime from, LocalDateTime to, Integer contatoId, boolean descending, Cursor after, int limit) {
+        return findPage(from, to, contatoId, null, descending, after, limit);
+    }
+
+    /**
+     * Como {@link #findPage(LocalDateTime, LocalDateTime, Integer, boolean, Cursor, int)}, só com os
+     * compromissos cujo local ou descrição contém as palavras de {@code text} (ver {@link #search});
+     * text nulo ou vazio não filtra.
+     */
+    public List<Compromisso> findPage(LocalDateTime from, LocalDateTime to, Integer contatoId, String text, boolean descending, Cursor after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, contato_id, datetime, local, online, descricao FROM compromissos");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sql, params, from, to, contatoId, text);
+        if (after != null) appendKeyset(sql, params, after, !descending);
+        sql.append(descending ? " ORDER BY datetime DESC, id DESC LIMIT ?" : " ORDER BY datetime, id LIMIT ?");
+        params.add(limit);
+        return query(sql.toString(), params);
+    }
+
+    /**
+     * Página por posição (LIMIT/OFFSET). Usado apenas quando não se conhece o cursor da página anterior,
+     * por exemplo ao saltar direto para o fim da lista.
+     */
+    public List<Compromisso> findSlice(LocalDateTime from, LocalDateTime to, Integer contatoId, boolean descending, int offset, int limit) {
+        return findSlice(from, to, contatoId, null, descending, offset, limit);
+    }
+
+    public List<Compromisso> findSlice(LocalDateTime from, LocalDateTime to, Integer contatoId, String text, boolean descending, int offset, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, contato_id, datetime, local, online, descricao FROM compromissos");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sql, params, from, to, contatoId, text);
+        sql.append(descending ? " ORDER BY datetime DESC, id DESC LIMIT ? OFFSET ?" : " ORDER BY datetime, id LIMIT ? OFFSET ?");
+        params.add(limit);
+        params.add(offset);
+        return query(sql.toString(), params);
+    }
+
+    /**
+     * Quantidade de compromissos em [from, to), opcionalmente de um único contato.
+     */
+    public int count(LocalDateTime from, LocalDateTime to, Integer contatoId) {
+        return countBefore(from, to, contatoId, null, false, null);
+    }
+
+    public int count(LocalDateTime from, LocalDateTime to, Integer contatoId, String text) {
+        return countBefore(from, to, contatoId, text, false, null);
+    }
+
+    /**
+     * Quantos compromissos do filtro vêm antes de {@code position} na ordenação escolhida,
+     * ou seja, o índice que um compromisso nessa posição ocupa na lista paginada.
+     */
+    public int countBefore(LocalDateTime from, LocalDateTime to, Integer contatoId, boolean descending, Cursor position) {
+        return countBefore(from, to, contatoId, null, descending, position);
+    }
+
+    public int countBefore(LocalDateTime from, LocalDateTime to, Integer contatoId, String text, boolean descending, Cursor position) {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM compromissos");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sql, params, from, to, contatoId, text);
+        if (position != null) appendKeyset(sql, params, position, descending);
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    private static void appendFilter(StringBuilder sql, List<Object> params, LocalDateTime from, LocalDateTime to, Integer contatoId, String text) {
+        sql.append(" WHERE 1 = 1");
+        String match = FullTextQuery.expression(text);
+        if (match != null) {
+            // the FTS lookup yields a rowid set; the datetime index still drives the ordering
+            sql.append(" AND id IN (SELECT rowid FROM compromissos_fts WHERE compromissos_fts MATCH ?)");
+            params.add(match);
+        }
+        if (contatoId != null) {
+            sql.append(" AND contato_id = ?");
+            params.add(contatoId);
+        }
+        if (from != null) {
+            sql.append(" AND datetime >= ?");
+            params.add(DateTimeCodec.toEpoch(from));
+        }
+        if (to != null) {
+            sql.append(" AND datetime < ?");
+            params.add(DateTimeCodec.toEpoch(to));
+        }
+    }
+
+    // rows strictly greater (or smaller) than the cursor in ascending (datetime, id) order;
+    // NULL datetimes sort first in SQLite
+    private static void appendKeyset(StringBuilder sql, List<Object> params, Cursor c, boolean greater) {
+        if (greater) {
+            if (c.epoch == null) {
+                sql.append(" AND ((datetime IS NULL AND id > ?) OR datetime IS NOT NULL)");
+                params.add(c.id);
+            } else {
+                sql.append(" AND (datetime > ? OR (datetime = ? AND id > ?))");
+                params.add(c.epoch);
+                params.add(c.epoch);
+                params.add(c.id);
+            }
+        } else {
+            if (c.epoch == null) {
+                sql.append(" AND (datetime IS NULL AND id < ?)");
+                params.add(c.id);
+            } else {
+                sql.append(" AND (datetime IS NULL OR datetime < ? OR (datetime = ? AND id < ?))");
+                params.add(c.epoch);
+                params.add(c.epoch);
+                params.add(c.id);
+            }
+        }
+    }
+
+    /**
+     * Compromissos que ocupariam o mesmo horário que {@code c} (ver {@link #DURACAO}): do mesmo contato
+     * ou, se c for presencial, no mesmo local (sem diferenciar maiúsculas nem espaços nas pontas)
+     * com outro compromisso presencial. O próprio c (mesmo id) não conta.
+     * <p>
+     * Como a duração é fixa, [s, s + DURACAO) cruza [t, t + DURACAO) exatamente quando
+     * t - DURACAO &lt; s &lt; t + DURACAO: cada lado é uma faixa nos índices (contato_id, datetime) e
+     * (lower(trim(local)), datetime), ou seja, O(log n + k) sem percorrer a tabela. Ocorrências de
+     * compromissos repetidos são calculadas só para essa janela (ver {@link #findOccurrences}).
+     */
+    public List<Compromisso> findConflicts(Compromisso c) {
+        if (c.getDateTime() == null) return new ArrayList<>();
+        long start = DateTimeCodec.toEpoch(c.getDateTime());
+        long seconds = DURACAO.getSeconds();
+        int self = c.getId() == null ? -1 : c.getId();
+        String cols = "SELECT id, contato_id, datetime, local, online, descricao FROM compromissos";
+        StringBuilder sql = new StringBuilder(cols)
+                .append(" WHERE contato_id = ? AND datetime > ? AND datetime < ? AND id <> ?").append(NOT_SERIES);
+        List<Object> params = new ArrayList<>();
+        params.add(c.getContatoId());
+        params.add(start - seconds);
+        params.add(start + seconds);
+        params.add(self);
+        String local = c.getLocal() == null ? "" : c.getLocal().trim();
+        if (!c.isOnline() && !local.isEmpty()) {
+            sql.append(" UNION ").append(cols)
+                    .append(" WHERE lower(trim(local)) = lower(?) AND datetime > ? AND datetime < ? AND id <> ? AND online = 0").append(NOT_SERIES);
+            params.add(local);
+            params.add(start - seconds);
+            params.add(start + seconds);
+            params.add(self);
+        }
+        sql.append(" ORDER BY datetime, id");
+        List<Compromisso> conflicts = query(sql.toString(), params);
+
+        LocalDateTime from = c.getDateTime().minus(DURACAO).plusSeconds(1);
+        LocalDateTime to = c.getDateTime().plus(DURACAO);
+        String place = local.toLowerCase(Locale.ROOT);
+        boolean presencial = !c.isOnline() && !local.isEmpty();
+        try (Connection conn = Database.getReadConnection()) {
+            for (Iterator<Compromisso> series : expandSeries(conn, from, to, null)) {
+                while (series.hasNext()) {
+                    Compromisso o = series.next();
+                    if (o.getId() == self) continue;
+                    boolean sameContato = o.getContatoId() != null && o.getContatoId().equals(c.getContatoId());
+                    boolean samePlace = presencial && !o.isOnline() && o.getLocal() != null
+                            && o.getLocal().trim().toLowerCase(Locale.ROOT).equals(place);
+                    if (sameContato || samePlace) conflicts.add(o);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        conflicts.sort(OCCURRENCE_ORDER);
+        return conflicts;
+    }
+
+    // ---------- recorrências ----------
+
+    // os compromissos que definem uma série só aparecem por meio das ocorrências expandidas
+    private static final String NOT_SERIES = " AND id NOT IN (SELECT compromisso_id FROM recorrencias)";
+    private static final Comparator<Compromisso> OCCURRENCE_ORDER =
+            Comparator.comparing(Compromisso::getDateTime).thenComparing(Compromisso::getId);
+
+    /**
+     * Todas as ocorrências em [from, to), em ordem de (datetime, id): compromissos avulsos e as
+     * ocorrências dos compromissos repetidos, calculadas conforme o iterador avança.
+     * <p>
+     * Só são lidas as séries que podem ter ocorrências na janela (começam antes de {@code to} e não
+     * têm data final antes de {@code from}) e, delas, só as exceções dentro da janela; a primeira
+     * ocorrência de cada série é obtida por conta. O custo depende da janela e do número de séries
+     * ativas, não do comprimento das séries. Cada ocorrência é um Compromisso novo com o id (e os
+     * demais dados) do compromisso que define a série.
+     */
+    public Iterator<Compromisso> findOccurrences(LocalDateTime from, LocalDateTime to, Integer contatoId) {
+        if (from == null || to == null) throw new IllegalArgumentException("from e to são obrigatórios");
+        List<Iterator<Compromisso>> sources = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, contato_id, datetime, local, online, descricao FROM compromissos");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sql, params, from, to, contatoId, null);
+        sql.append(NOT_SERIES).append(" ORDER BY datetime, id");
+        sources.add(query(sql.toString(), params).iterator());
+        try (Connection conn = Database.getReadConnection()) {
+            sources.addAll(expandSeries(conn, from, to, contatoId == null ? null : List.of(contatoId)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new MergedIterator<>(sources, OCCURRENCE_ORDER);
+    }
+
+    /**
+     * Inícios de todas as ocorrências em [from, to) dos compromissos de {@code contatoIds}, em ordem
+     * (com repetições se dois começam juntos), para quem só precisa saber quando a agenda está ocupada.
+     * Cada contato é lido já em ordem e só pelo índice (contato_id, datetime, id), sem buscar as
+     * linhas, para um {@code long[]} por contato, e as listas são intercaladas (merge de k vias) em vez de
+     * ordenar o conjunto todo; ver {@link OccupiedStarts}.
+     * <p>
+     * Diferente das listas, um erro de leitura não vira resultado vazio: "nenhum compromisso" seria
+     * lido como "todos disponíveis".
+     *
+     * @throws IllegalStateException se a agenda não pôde ser lida (a causa é a SQLException)
+     */
+    public OccupiedStarts findOccupiedStarts(Collection<Integer> contatoIds, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) throw new IllegalArgumentException("from e to são obrigatórios");
+        OccupiedStarts starts = new OccupiedStarts();
+        String sql = "SELECT datetime FROM compromissos WHERE contato_id = ? AND datetime >= ? AND datetime < ?"
+                + NOT_SERIES + " ORDER BY datetime";
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(2, DateTimeCodec.toEpoch(from));
+            ps.setLong(3, DateTimeCodec.toEpoch(to));
+            for (int contatoId : new LinkedHashSet<>(contatoIds)) {
+                ps.setInt(1, contatoId);
+                long[] run = new long[16];
+                int n = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (n == run.length) run = Arrays.copyOf(run, n * 2);
+                        run[n++] = rs.getLong(1);
+                    }
+                }
+                starts.addRun(run, n);
+            }
+            if (!contatoIds.isEmpty()) {
+                for (Iterator<Compromisso> series : expandSeries(conn, from, to, contatoIds)) starts.addSeries(series);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Não foi possível ler os compromissos dos contatos", e);
+        }
+        return starts.start();
+    }
+
+    // one lazy iterator per series that may have occurrences in [from, to)
+    private List<Iterator<Compromisso>> expandSeries(Connection conn, LocalDateTime from, LocalDateTime to, Collection<Integer> contatoIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT c.id, c.contato_id, c.datetime, c.local, c.online, c.descricao, "
+                + "r.frequencia, r.intervalo, r.repeticoes, r.ate "
+                // CROSS JOIN keeps recorrencias as the outer loop: without it SQLite may walk the
+                // datetime index of every compromisso before the window instead of the few series
+                + "FROM recorrencias r CROSS JOIN compromissos c ON c.id = r.compromisso_id "
+                + "WHERE c.datetime < ? AND (r.ate IS NULL OR r.ate >= ?)");
+        List<Object> params = new ArrayList<>();
+        params.add(DateTimeCodec.toEpoch(to));
+        params.add(DateTimeCodec.toEpoch(from));
+        if (contatoIds != null) {
+            sql.append(" AND c.contato_id IN (");
+            for (Integer id : contatoIds) {
+                sql.append(params.size() > 2 ? ", ?" : "?");
+                params.add(id);
+            }
+            sql.append(')');
+        }
+        Map<Integer, Compromisso> masters = new HashMap<>();
+        Map<Integer, Recorrencia> rules = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Compromisso master = mapRow(rs);
+                    masters.put(master.getId(), master);
+                    rules.put(master.getId(), mapRecorrencia(rs));
+                }
+            }
+        }
+        List<Iterator<Compromisso>> series = new ArrayList<>();
+        if (masters.isEmpty()) return series;
+        String ex = "SELECT compromisso_id, datetime FROM recorrencia_excecoes WHERE datetime >= ? AND datetime < ?";
+        try (PreparedStatement ps = conn.prepareStatement(ex)) {
+            ps.setLong(1, DateTimeCodec.toEpoch(from));
+            ps.setLong(2, DateTimeCodec.toEpoch(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Recorrencia r = rules.get(rs.getInt(1));
+                    if (r != null) r.getExcecoes().add(DateTimeCodec.fromEpoch(rs.getLong(2)));
+                }
+            }
+        }
+        for (Compromisso m : masters.values()) {
+            Iterator<LocalDateTime> starts = rules.get(m.getId()).ocorrencias(m.getDateTime(), from, to);
+            series.add(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return starts.hasNext();
+                }
+
+                @Override
+                public Compromisso next() {
+                    return new Compromisso(m.getId(), m.getContatoId(), starts.next(), m.getLocal(), m.isOnline(), m.getDescricao());
+                }
+            });
+        }
+        return series;
+    }
+
+    /** Regra de repetição do compromisso (com todas as exceções), ou null se ele não se repete. */
+    public Recorrencia findRecorrencia(int compromissoId) {
+        String sql = "SELECT frequencia, intervalo, repeticoes, ate FROM recorrencias WHERE compromisso_id = ?";
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, compromissoId);
+            Recorrencia r;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                r = mapRecorrencia(rs);
+            }
+            try (PreparedStatement ex = conn.prepareStatement("SELECT datetime FROM recorrencia_excecoes WHERE compromisso_id = ?")) {
+                ex.setInt(1, compromissoId);
+                try (ResultSet rs = ex.executeQuery()) {
+                    while (rs.next()) r.getExcecoes().add(DateTimeCodec.fromEpoch(rs.getLong(1)));
+                }
+            }
+            return r;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Faz o compromisso se repetir conforme {@code r} (substituindo a regra e as exceções anteriores),
+     * ou deixa de repeti-lo se r for null. O compromisso passa a ser a primeira ocorrência da série.
+     */
+    public boolean setRecorrencia(int compromissoId, Recorrencia r) {
+        try (Connection conn = Database.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                writeRecorrencia(conn, compromissoId, r);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, compromissoId);
+        return true;
+    }
+
+    // replaces the rule inside the caller's transaction; the cascade drops the old exceptions too
+    private static void writeRecorrencia(Connection conn, int compromissoId, Recorrencia r) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM recorrencias WHERE compromisso_id = ?")) {
+            ps.setInt(1, compromissoId);
+            ps.executeUpdate();
+        }
+        if (r == null) return;
+        String sql = "INSERT INTO recorrencias (compromisso_id, frequencia, intervalo, repeticoes, ate) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, compromissoId);
+            ps.setString(2, r.getFrequencia().name());
+            ps.setInt(3, Math.max(1, r.getIntervalo()));
+            ps.setObject(4, r.getRepeticoes());
+            ps.setObject(5, r.getAte() == null ? null : DateTimeCodec.toEpoch(r.getAte()));
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO recorrencia_excecoes (compromisso_id, datetime) VALUES (?, ?)")) {
+            for (LocalDateTime dt : r.getExcecoes()) {
+                ps.setInt(1, compromissoId);
+                ps.setLong(2, DateTimeCodec.toEpoch(dt));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Cancela uma ocorrência da série (pelo seu início); as demais continuam. */
+    public boolean addExcecao(int compromissoId, LocalDateTime ocorrencia) {
+        String sql = "INSERT OR IGNORE INTO recorrencia_excecoes (compromisso_id, datetime) VALUES (?, ?)";
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, compromissoId);
+            ps.setLong(2, DateTimeCodec.toEpoch(ocorrencia));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, compromissoId);
+        return true;
+    }
+
+    private static Recorrencia mapRecorrencia(ResultSet rs) throws SQLException {
+        Recorrencia r = new Recorrencia();
+        r.setFrequencia(Recorrencia.Frequencia.valueOf(rs.getString("frequencia")));
+        r.setIntervalo(rs.getInt("intervalo"));
+        int repeticoes = rs.getInt("repeticoes");
+        r.setRepeticoes(rs.wasNull() ? null : repeticoes);
+        long ate = rs.getLong("ate");
+        r.setAte(rs.wasNull() ? null : DateTimeCodec.fromEpoch(ate));
+        return r;
+    }
+
+    // ---------- contagens ----------
+    // lidas das tabelas contagem_dia e contagem_contato, mantidas por triggers (ver Database): o custo
+    // depende do número de dias ou contatos consultados, não do número de compromissos
+
+    /** Todos os compromissos gravados (cada série conta uma vez). */
+    public Contagem countTotal() {
+        Map<Integer, Contagem> total = countGrouped("SELECT 0, online, sum(total) FROM contagem_contato GROUP BY online", List.of());
+        return total.getOrDefault(0, Contagem.ZERO);
+    }
+
+    /** Compromissos de cada contato que tem algum, do que tem mais para o que tem menos. */
+    public Map<Integer, Contagem> countPerContato() {
+        Map<Integer, Contagem> counts = countGrouped("SELECT contato_id, online, total FROM contagem_contato", List.of());
+        Map<Integer, Contagem> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Contagem>comparingByValue(Comparator.comparingLong(Contagem::getTotal)).reversed())
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return sorted;
+    }
+
+    public Contagem countByContato(int contatoId) {
+        Map<Integer, Contagem> counts = countGrouped("SELECT contato_id, online, total FROM contagem_contato WHERE contato_id = ?",
+                List.of(contatoId));
+        return counts.getOrDefault(contatoId, Contagem.ZERO);
+    }
+
+    /** Compromissos de cada dia de {@code from} a {@code to} (inclusive) que tem algum, em ordem. */
+    public Map<LocalDate, Contagem> countPerDay(LocalDate from, LocalDate to) {
+        Map<Integer, Contagem> counts = countGrouped("SELECT dia, online, total FROM contagem_dia WHERE dia BETWEEN ? AND ? ORDER BY dia",
+                List.of(from.toEpochDay(), to.toEpochDay()));
+        Map<LocalDate, Contagem> days = new LinkedHashMap<>();
+        counts.forEach((dia, c) -> days.put(LocalDate.ofEpochDay(dia), c));
+        return days;
+    }
+
+    /**
+     * Compromissos por semana (segunda a domingo) nas semanas que cruzam [from, to], só dos dias dentro
+     * do intervalo; a chave é a segunda-feira de cada semana.
+     */
+    public Map<LocalDate, Contagem> countPerWeek(LocalDate from, LocalDate to) {
+        Map<LocalDate, Contagem> weeks = new LinkedHashMap<>();
+        countPerDay(from, to).forEach((dia, c) ->
+                weeks.merge(dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), c, Contagem::plus));
+        return weeks;
+    }
+
+    // rows (key, online, total) folded into one Contagem per key, keeping the row order
+    private Map<Integer, Contagem> countGrouped(String sql, List<Object> params) {
+        Map<Integer, Contagem> counts = new LinkedHashMap<>();
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long total = rs.getLong(3);
+                    Contagem c = rs.getBoolean(2) ? new Contagem(0, total) : new Contagem(total, 0);
+                    counts.merge(rs.getInt(1), c, Contagem::plus);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    /**
+     * Busca textual em local e descrição (índice FTS5 compromissos_fts). Cada palavra de {@code text}
+     * vale como prefixo e todas precisam aparecer, sem diferenciar acentos nem maiúsculas.
+     * Devolve até {@code limit} compromissos do mais para o menos relevante (bm25; o local pesa mais
+     * que a descrição), empatados por data. Texto sem nenhuma palavra devolve lista vazia.
+     */
+    public List<Compromisso> search(String text, int limit) {
+        String match = FullTextQuery.expression(text);
+        if (match == null) return new ArrayList<>();
+        String sql = "SELECT c.id, c.contato_id, c.datetime, c.local, c.online, c.descricao "
+                + "FROM compromissos_fts JOIN compromissos c ON c.id = compromissos_fts.rowid "
+                + "WHERE compromissos_fts MATCH ? ORDER BY bm25(compromissos_fts, 2.0, 1.0), c.datetime, c.id LIMIT ?";
+        List<Object> params = new ArrayList<>();
+        params.add(match);
+        params.add(limit);
+        return query(sql, params);
+    }
+
+    private List<Compromisso> query(String sql, List<Object> params) {
+        List<Compromisso> list = new ArrayList<>();
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * Percorre todos os compromissos (ordenados por datetime) junto com o nome do contato (JOIN),
+     * com um cursor somente-avanço e sem montar a lista em memória. Se {@code action} devolver
+     * false a leitura para. É um único SELECT, então todas as linhas vêm do mesmo estado do banco,
+     * mesmo com escritas durante a leitura.
+     */
+    public void forEachWithContatoNome(BiPredicate<Compromisso, String> action) {
+        String sql = "SELECT c.id, c.contato_id, c.datetime, c.local, c.online, c.descricao, ct.nome AS contato_nome "
+                + "FROM compromissos c LEFT JOIN contatos ct ON ct.id = c.contato_id ORDER BY c.datetime, c.id";
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (!action.test(mapRow(rs), rs.getString("contato_nome"))) break;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     public Compromisso findById(int id) {
+        Compromisso cached = CACHE.get(id);
+        if (cached != null) return cached;
+        long stamp = CACHE.stamp();
         String sql = "SELECT id, contato_id, datetime, local, online, descricao FROM compromissos WHERE id = ?";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return mapRow(rs);
+                if (rs.next()) {
+                    Compromisso c = mapRow(rs);
+                    CACHE.putIfFresh(id, c, stamp);
+                    return c;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -55,62 +658,240 @@ public class CompromissoDAO {
     }
 
     public boolean insert(Compromisso comp) {
+        return insert(comp, null);
+    }
+
+    /**
+     * Insere o compromisso e, se {@code r} não for null, a regra de repetição dele na mesma transação:
+     * ou os dois são gravados, ou nenhum. O id gerado é atribuído a {@code comp}.
+     */
+    public boolean insert(Compromisso comp, Recorrencia r) {
         String sql = "INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (?, ?, ?, ?, ?)";
+        Integer id = null;
         try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, comp.getContatoId());
-            ps.setString(2, comp.getDateTime().format(F));
-            ps.setString(3, comp.getLocal());
-            ps.setBoolean(4, comp.isOnline());
-            ps.setString(5, comp.getDescricao());
-            int affected = ps.executeUpdate();
-            if (affected == 1) {
-                try (ResultSet keys = ps.getGeneratedKeys()) {
-                    if (keys.next()) comp.setId(keys.getInt(1));
+            conn.setAutoCommit(false);
+            try {
+                ps.setInt(1, comp.getContatoId());
+                setDateTime(ps, 2, comp.getDateTime());
+                ps.setString(3, comp.getLocal());
+                ps.setBoolean(4, comp.isOnline());
+                ps.setString(5, comp.getDescricao());
+                if (ps.executeUpdate() == 1) {
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (keys.next()) id = keys.getInt(1);
+                    }
                 }
-                return true;
+                if (id == null) {
+                    conn.rollback();
+                    return false;
+                }
+                if (r != null) writeRecorrencia(conn, id, r);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
+        }
+        comp.setId(id);
+        CACHE.put(id, comp);
+        ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.INSERTED, id);
+        return true;
+    }
+
+    /**
+     * Insere muitos compromissos com INSERT em lote, confirmando a transação a cada {@code commitSize}
+     * linhas (ex.: importação de CSV). Os ids gerados são atribuídos aos objetos.
+     * Devolve quantos compromissos foram gravados.
+     */
+    public int insertBatched(Iterator<? extends Compromisso> compromissos, int commitSize) {
+        return insertBatched(compromissos, commitSize, null);
+    }
+
+    /**
+     * Como {@link #insertBatched(Iterator, int)}, mas um lote recusado pelo banco é refeito linha a
+     * linha e cada compromisso que não pôde ser gravado é passado a {@code rejected} com o erro, em vez
+     * de parar a inserção.
+     */
+    public int insertBatched(Iterator<? extends Compromisso> compromissos, int commitSize, BiConsumer<? super Compromisso, SQLException> rejected) {
+        int inserted = insertRows(compromissos, commitSize, rejected);
+        if (inserted > 0) ChangeBus.reset(ChangeBus.Table.COMPROMISSOS);
+        return inserted;
+    }
+
+    /**
+     * Insere todos os compromissos em uma única transação (tudo ou nada) e atribui os ids gerados.
+     */
+    public boolean insertAll(Collection<? extends Compromisso> compromissos) {
+        if (compromissos.isEmpty()) return true;
+        if (insertRows(compromissos.iterator(), Integer.MAX_VALUE, null) != compromissos.size()) return false;
+        ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.INSERTED, ids(compromissos));
+        return true;
+    }
+
+    private int insertRows(Iterator<? extends Compromisso> compromissos, int commitSize, BiConsumer<? super Compromisso, SQLException> rejected) {
+        String sql = "INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (?, ?, ?, ?, ?)";
+        try {
+            return Batches.insert(sql, compromissos, commitSize, (ps, c) -> {
+                ps.setInt(1, c.getContatoId());
+                setDateTime(ps, 2, c.getDateTime());
+                ps.setString(3, c.getLocal());
+                ps.setBoolean(4, c.isOnline());
+                ps.setString(5, c.getDescricao());
+            }, Compromisso::setId, rejected);
+        } finally {
+            CACHE.invalidateAll();
         }
-        return false;
     }
 
     public boolean update(Compromisso comp) {
         if (comp.getId() == null) return false;
-        String sql = "UPDATE compromissos SET contato_id = ?, datetime = ?, local = ?, online = ?, descricao = ? WHERE id = ?";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, comp.getContatoId());
-            ps.setString(2, comp.getDateTime().format(F));
-            ps.setString(3, comp.getLocal());
-            ps.setBoolean(4, comp.isOnline());
-            ps.setString(5, comp.getDescricao());
-            ps.setInt(6, comp.getId());
+        WriteBehindBuffer writeBehind = Database.writeBehind();
+        if (writeBehind != null) {
+            writeBehind.update(TABLE, comp.getId(), new Compromisso(comp.getId(), comp.getContatoId(), comp.getDateTime(), comp.getLocal(), comp.isOnline(), comp.getDescricao()));
+            // the next read syncs the buffer and reloads it
+            CACHE.invalidate(comp.getId());
+            ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, comp.getId());
+            return true;
+        }
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            UPDATE_BINDER.bind(ps, comp);
             int affected = ps.executeUpdate();
-            return affected == 1;
+            if (affected == 1) {
+                CACHE.put(comp.getId(), comp);
+                ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, comp.getId());
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        CACHE.invalidate(comp.getId());
         return false;
     }
 
+    /**
+     * Atualiza o compromisso e substitui a regra de repetição dele ({@code r} null deixa de repeti-lo)
+     * na mesma transação. Grava direto mesmo com o write-behind ligado.
+     */
+    public boolean update(Compromisso comp, Recorrencia r) {
+        if (comp.getId() == null) return false;
+        boolean ok = false;
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            conn.setAutoCommit(false);
+            try {
+                UPDATE_BINDER.bind(ps, comp);
+                if (ps.executeUpdate() == 1) {
+                    writeRecorrencia(conn, comp.getId(), r);
+                    conn.commit();
+                    ok = true;
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        if (!ok) {
+            CACHE.invalidate(comp.getId());
+            return false;
+        }
+        CACHE.put(comp.getId(), comp);
+        ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, comp.getId());
+        return true;
+    }
+
+    /**
+     * Atualiza todos os compromissos em uma única transação; falha (sem alterar nada) se algum não tiver id.
+     */
+    public boolean updateAll(Collection<? extends Compromisso> compromissos) {
+        for (Compromisso c : compromissos) {
+            if (c.getId() == null) return false;
+        }
+        boolean ok;
+        try {
+            ok = Batches.execute(UPDATE_SQL, compromissos, UPDATE_BINDER);
+        } finally {
+            CACHE.invalidateAll();
+        }
+        if (ok) ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.UPDATED, ids(compromissos));
+        return ok;
+    }
+
     public boolean delete(int id) {
+        WriteBehindBuffer writeBehind = Database.writeBehind();
+        if (writeBehind != null) {
+            writeBehind.delete(TABLE, id);
+            CACHE.invalidate(id);
+            ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.DELETED, id);
+            return true;
+        }
         String sql = "DELETE FROM compromissos WHERE id = ?";
         try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             int affected = ps.executeUpdate();
-            return affected == 1;
+            if (affected == 1) {
+                CACHE.invalidate(id);
+                ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.DELETED, id);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        CACHE.invalidate(id);
         return false;
     }
 
+    /** Exclui os compromissos com os ids dados em uma única transação. */
+    public boolean deleteAll(Collection<Integer> ids) {
+        boolean ok;
+        try {
+            ok = Batches.execute("DELETE FROM compromissos WHERE id = ?", ids, (ps, id) -> ps.setInt(1, id));
+        } finally {
+            CACHE.invalidateAll();
+        }
+        if (ok && !ids.isEmpty()) ChangeBus.publish(ChangeBus.Table.COMPROMISSOS, ChangeBus.Kind.DELETED, ids);
+        return ok;
+    }
+
+    private static List<Integer> ids(Collection<? extends Compromisso> compromissos) {
+        List<Integer> ids = new ArrayList<>(compromissos.size());
+        for (Compromisso c : compromissos) ids.add(c.getId());
+        return ids;
+    }
+
+    /**
+     * Posição (datetime, id) de um compromisso na ordenação usada por {@link #findPage}.
+     */
+    public static final class Cursor {
+        private final Long epoch;
+        private final int id;
+
+        private Cursor(Long epoch, int id) {
+            this.epoch = epoch;
+            this.id = id;
+        }
+
+        public static Cursor after(Compromisso c) {
+            Long epoch = c.getDateTime() == null ? null : DateTimeCodec.toEpoch(c.getDateTime());
+            return new Cursor(epoch, c.getId() == null ? 0 : c.getId());
+        }
+    }
+
+    private static void setDateTime(PreparedStatement ps, int index, LocalDateTime dt) throws SQLException {
+        if (dt == null) ps.setNull(index, Types.INTEGER);
+        else ps.setLong(index, DateTimeCodec.toEpoch(dt));
+    }
+
     private Compromisso mapRow(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         int contatoId = rs.getInt("contato_id");
-        String dt = rs.getString("datetime");
-        LocalDateTime ldt = null;
-        if (dt != null && !dt.isEmpty()) ldt = LocalDateTime.parse(dt, F);
+        long epoch = rs.getLong("datetime");
+        LocalDateTime ldt = rs.wasNull() ? null : DateTimeCodec.fromEpoch(epoch);
         String local = rs.getString("local");
         boolean online = rs.getBoolean("online");
         String descricao = rs.getString("descricao");
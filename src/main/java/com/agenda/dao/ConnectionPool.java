@@ -0,0 +1,254 @@
+package com.agenda.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool simples e limitado de conexões SQLite.
+ * As conexões físicas são abertas sob demanda (até maxSize), recebem os PRAGMAs uma única vez
+ * e são validadas antes de serem entregues. close() na conexão devolvida apenas a retorna ao pool.
+ */
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String[] setupPragmas;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final BlockingQueue<Connection> idle;
+    private final Semaphore permits;
+    // set by shutdown(): no new connections, returned ones are closed instead of kept
+    private volatile boolean closed;
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    // connections in use per borrowing thread
+    private final ConcurrentHashMap<Thread, Integer> holders = new ConcurrentHashMap<>();
+
+    ConnectionPool(String url, int maxSize, long acquireTimeoutMillis, String... setupPragmas) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+        this.url = url;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.setupPragmas = setupPragmas == null ? new String[0] : setupPragmas.clone();
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    Connection acquire() throws SQLException {
+        if (closed) throw new SQLException("Pool de conexões encerrado");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout aguardando conexão do pool (" + acquireTimeoutMillis + " ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido aguardando conexão do pool", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            // shutdown() may have run while this thread waited for the permit
+            if (closed) throw new SQLException("Pool de conexões encerrado");
+            Connection physical = takeValidIdle();
+            if (physical == null) physical = open();
+            inUse.incrementAndGet();
+            acquired.incrementAndGet();
+            Thread owner = Thread.currentThread();
+            holders.merge(owner, 1, Integer::sum);
+            return wrap(physical, owner);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeValidIdle() {
+        Connection c;
+        while ((c = idle.poll()) != null) {
+            if (isUsable(c)) return c;
+            discard(c);
+        }
+        return null;
+    }
+
+    private boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement s = conn.createStatement()) {
+            for (String pragma : setupPragmas) {
+                try {
+                    s.execute(pragma);
+                } catch (SQLException e) {
+                    // ignore if not supported; connection still usable
+                }
+            }
+        }
+        opened.incrementAndGet();
+        return conn;
+    }
+
+    /** true se a thread atual está com alguma conexão deste pool que ainda não devolveu. */
+    boolean isHeldByCurrentThread() {
+        return holders.containsKey(Thread.currentThread());
+    }
+
+    private void release(Connection physical, Thread owner) {
+        inUse.decrementAndGet();
+        holders.computeIfPresent(owner, (t, n) -> n == 1 ? null : n - 1);
+        try {
+            if (!physical.isClosed()) {
+                // undo whatever the borrower left behind so the next one gets a clean connection
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                if (!closed && idle.offer(physical)) {
+                    // shutdown() may have drained the queue between the check and the offer
+                    if (closed && idle.remove(physical)) discard(physical);
+                    return;
+                }
+            }
+            discard(physical);
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Connection c) {
+        opened.decrementAndGet();
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Encerra o pool: fecha as conexões ociosas, as conexões em uso são fechadas quando devolvidas e
+     * novos {@link #acquire()} falham com SQLException.
+     */
+    void shutdown() {
+        closed = true;
+        Connection c;
+        while ((c = idle.poll()) != null) discard(c);
+    }
+
+    private Connection wrap(Connection physical, Thread owner) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledHandler(physical, owner));
+    }
+
+    Stats stats() {
+        return new Stats(maxSize, opened.get(), inUse.get(), idle.size(), acquired.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    /** Fotografia dos contadores do pool. */
+    public static final class Stats {
+        public final int maxSize;
+        public final int open;
+        public final int inUse;
+        public final int idle;
+        public final long acquired;
+        public final long totalWaitMillis;
+        public final long maxWaitMillis;
+
+        Stats(int maxSize, int open, int inUse, int idle, long acquired, long totalWaitMillis, long maxWaitMillis) {
+            this.maxSize = maxSize;
+            this.open = open;
+            this.inUse = inUse;
+            this.idle = idle;
+            this.acquired = acquired;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public double averageWaitMillis() {
+            return acquired == 0 ? 0.0 : (double) totalWaitMillis / acquired;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool[max=" + maxSize + ", open=" + open + ", inUse=" + inUse + ", idle=" + idle
+                    + ", acquired=" + acquired + ", totalWaitMs=" + totalWaitMillis + ", maxWaitMs=" + maxWaitMillis + "]";
+        }
+    }
+
+    private final class PooledHandler implements InvocationHandler {
+        private final Connection physical;
+        private final Thread owner;
+        private boolean closed;
+
+        PooledHandler(Connection physical, Thread owner) {
+            this.physical = physical;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(physical, owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(physical)) return physical;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled(" + physical + ")";
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException("Conexão já devolvida ao pool");
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
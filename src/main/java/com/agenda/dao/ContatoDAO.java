@@ -1,34 +1,124 @@
 package com.agenda.dao;
 
 import com.agenda.model.Contato;
+import com.agenda.model.ContatoKeys;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 public class ContatoDAO {
+    // as colunas *_chave (com os índices UNIQUE) são sempre gravadas junto, calculadas por ContatoKeys
+    private static final String INSERT_SQL = "INSERT INTO contatos (nome, email, telefone, nome_chave, email_chave, telefone_chave) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE contatos SET nome = ?, email = ?, telefone = ?, "
+            + "nome_chave = ?, email_chave = ?, telefone_chave = ? WHERE id = ?";
+    private static final Batches.Binder<Contato> INSERT_BINDER = ContatoDAO::bindColumns;
+    private static final Batches.Binder<Contato> UPDATE_BINDER = (ps, c) -> {
+        bindColumns(ps, c);
+        ps.setInt(7, c.getId());
+    };
+    // usada quando o modo write-behind está ligado (ver WriteBehindBuffer)
+    private static final WriteBehindBuffer.Table<Contato> TABLE = new WriteBehindBuffer.Table<>("contatos",
+            UPDATE_SQL, UPDATE_BINDER, "DELETE FROM contatos WHERE id = ?");
+    // compartilhado entre as telas; invalidado por toda escrita feita por este DAO
+    private static final EntityCache<Contato> CACHE = new EntityCache<>(Integer.getInteger("agenda.cache.contatos", 10_000),
+            c -> new Contato(c.getId(), c.getNome(), c.getEmail(), c.getTelefone()));
+
+    /** Acertos, faltas e remoções do cache de contatos. */
+    public static EntityCache.Stats cacheStats() {
+        return CACHE.stats();
+    }
 
     public List<Contato> findAll() {
+        List<Contato> cached = CACHE.getAll();
+        if (cached != null) return cached;
+        long stamp = CACHE.stamp();
         List<Contato> list = new ArrayList<>();
         String sql = "SELECT id, nome, email, telefone FROM contatos ORDER BY nome";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 Contato c = new Contato(rs.getInt("id"), rs.getString("nome"), rs.getString("email"), rs.getString("telefone"));
                 list.add(c);
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return list;
+        }
+        CACHE.putAllIfFresh(list, Contato::getId, stamp);
+        return list;
+    }
+
+    /**
+     * Busca textual em nome, email e telefone (índice FTS5 contatos_fts). Cada palavra de {@code text}
+     * vale como prefixo e todas precisam aparecer, sem diferenciar acentos nem maiúsculas.
+     * Devolve até {@code limit} contatos do mais para o menos relevante (bm25; o nome pesa mais que
+     * email e telefone). Texto sem nenhuma palavra devolve lista vazia.
+     */
+    public List<Contato> search(String text, int limit) {
+        List<Contato> list = new ArrayList<>();
+        String match = FullTextQuery.expression(text);
+        if (match == null) return list;
+        String sql = "SELECT c.id, c.nome, c.email, c.telefone FROM contatos_fts JOIN contatos c ON c.id = contatos_fts.rowid "
+                + "WHERE contatos_fts MATCH ? ORDER BY bm25(contatos_fts, 10.0, 5.0, 1.0), c.nome LIMIT ?";
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, match);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new Contato(rs.getInt("id"), rs.getString("nome"), rs.getString("email"), rs.getString("telefone")));
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return list;
     }
 
+    public int count() {
+        try (Connection conn = Database.getReadConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM contatos")) {
+            if (rs.next()) return rs.getInt(1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Percorre os contatos (ordenados por nome) com um cursor somente-avanço, sem montar a lista
+     * inteira em memória. Se {@code action} devolver false a leitura para.
+     */
+    public void forEach(Predicate<Contato> action) {
+        String sql = "SELECT id, nome, email, telefone FROM contatos ORDER BY nome";
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Contato c = new Contato(rs.getInt("id"), rs.getString("nome"), rs.getString("email"), rs.getString("telefone"));
+                    if (!action.test(c)) break;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     public Contato findById(int id) {
+        Contato cached = CACHE.get(id);
+        if (cached != null) return cached;
+        long stamp = CACHE.stamp();
         String sql = "SELECT id, nome, email, telefone FROM contatos WHERE id = ?";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = Database.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return new Contato(rs.getInt("id"), rs.getString("nome"), rs.getString("email"), rs.getString("telefone"));
+                    Contato c = new Contato(rs.getInt("id"), rs.getString("nome"), rs.getString("email"), rs.getString("telefone"));
+                    CACHE.putIfFresh(id, c, stamp);
+                    return c;
                 }
             }
         } catch (SQLException e) {
@@ -38,16 +128,17 @@ public class ContatoDAO {
     }
 
     public boolean insert(Contato contato) {
-        String sql = "INSERT INTO contatos (nome, email, telefone) VALUES (?, ?, ?)";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, contato.getNome());
-            ps.setString(2, contato.getEmail());
-            ps.setString(3, contato.getTelefone());
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            INSERT_BINDER.bind(ps, contato);
             int affected = ps.executeUpdate();
             if (affected == 1) {
                 try (ResultSet keys = ps.getGeneratedKeys()) {
                     if (keys.next()) contato.setId(keys.getInt(1));
                 }
+                if (contato.getId() != null) {
+                    CACHE.put(contato.getId(), contato);
+                    ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.INSERTED, contato.getId());
+                }
                 return true;
             }
         } catch (SQLException e) {
@@ -56,32 +147,155 @@ public class ContatoDAO {
         return false;
     }
 
+    /**
+     * Insere muitos contatos com INSERT em lote, confirmando a transação a cada {@code commitSize}
+     * linhas (ex.: importação de CSV). Os ids gerados são atribuídos aos objetos.
+     * Devolve quantos contatos foram gravados.
+     */
+    public int insertBatched(Iterator<? extends Contato> contatos, int commitSize) {
+        return insertBatched(contatos, commitSize, null);
+    }
+
+    /**
+     * Como {@link #insertBatched(Iterator, int)}, mas um lote recusado pelo banco é refeito linha a
+     * linha e cada contato que não pôde ser gravado é passado a {@code rejected} com o erro, em vez
+     * de parar a inserção.
+     */
+    public int insertBatched(Iterator<? extends Contato> contatos, int commitSize, BiConsumer<? super Contato, SQLException> rejected) {
+        int inserted = insertRows(contatos, commitSize, rejected);
+        if (inserted > 0) ChangeBus.reset(ChangeBus.Table.CONTATOS);
+        return inserted;
+    }
+
+    /**
+     * Insere todos os contatos em uma única transação (tudo ou nada) e atribui os ids gerados.
+     */
+    public boolean insertAll(Collection<? extends Contato> contatos) {
+        if (contatos.isEmpty()) return true;
+        if (insertRows(contatos.iterator(), Integer.MAX_VALUE, null) != contatos.size()) return false;
+        List<Integer> ids = new ArrayList<>(contatos.size());
+        for (Contato c : contatos) ids.add(c.getId());
+        ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.INSERTED, ids);
+        return true;
+    }
+
+    private int insertRows(Iterator<? extends Contato> contatos, int commitSize, BiConsumer<? super Contato, SQLException> rejected) {
+        try {
+            return Batches.insert(INSERT_SQL, contatos, commitSize, INSERT_BINDER, Contato::setId, rejected);
+        } finally {
+            CACHE.invalidateAll();
+        }
+    }
+
     public boolean update(Contato contato) {
         if (contato.getId() == null) return false;
-        String sql = "UPDATE contatos SET nome = ?, email = ?, telefone = ? WHERE id = ?";
-        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, contato.getNome());
-            ps.setString(2, contato.getEmail());
-            ps.setString(3, contato.getTelefone());
-            ps.setInt(4, contato.getId());
+        WriteBehindBuffer writeBehind = Database.writeBehind();
+        if (writeBehind != null) {
+            writeBehind.update(TABLE, contato.getId(), new Contato(contato.getId(), contato.getNome(), contato.getEmail(), contato.getTelefone()));
+            // the next read syncs the buffer and reloads it
+            CACHE.invalidate(contato.getId());
+            ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.UPDATED, contato.getId());
+            return true;
+        }
+        try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            UPDATE_BINDER.bind(ps, contato);
             int affected = ps.executeUpdate();
-            return affected == 1;
+            if (affected == 1) {
+                CACHE.put(contato.getId(), contato);
+                ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.UPDATED, contato.getId());
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        CACHE.invalidate(contato.getId());
         return false;
     }
 
+    /**
+     * Atualiza todos os contatos em uma única transação; falha (sem alterar nada) se algum não tiver id.
+     */
+    public boolean updateAll(Collection<? extends Contato> contatos) {
+        for (Contato c : contatos) {
+            if (c.getId() == null) return false;
+        }
+        boolean ok;
+        try {
+            ok = Batches.execute(UPDATE_SQL, contatos, UPDATE_BINDER);
+        } finally {
+            CACHE.invalidateAll();
+        }
+        if (ok) {
+            List<Integer> ids = new ArrayList<>(contatos.size());
+            for (Contato c : contatos) ids.add(c.getId());
+            ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.UPDATED, ids);
+        }
+        return ok;
+    }
+
     public boolean delete(int id) {
+        WriteBehindBuffer writeBehind = Database.writeBehind();
+        if (writeBehind != null) {
+            writeBehind.delete(TABLE, id);
+            invalidateDeleted(id);
+            publishDeleted(id);
+            return true;
+        }
         String sql = "DELETE FROM contatos WHERE id = ?";
         try (Connection conn = Database.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             int affected = ps.executeUpdate();
-            return affected == 1;
+            if (affected == 1) {
+                invalidateDeleted(id);
+                publishDeleted(id);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        invalidateDeleted(id);
         return false;
     }
-}
 
+    /** Exclui os contatos com os ids dados em uma única transação. */
+    public boolean deleteAll(Collection<Integer> ids) {
+        boolean ok;
+        try {
+            ok = Batches.execute("DELETE FROM contatos WHERE id = ?", ids, (ps, id) -> ps.setInt(1, id));
+        } finally {
+            CACHE.invalidateAll();
+            CompromissoDAO.invalidateCache();
+        }
+        if (ok && !ids.isEmpty()) {
+            ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.DELETED, ids);
+            ChangeBus.reset(ChangeBus.Table.COMPROMISSOS);
+        }
+        return ok;
+    }
+
+    // ON DELETE CASCADE também apaga os compromissos do contato
+    private static void invalidateDeleted(int id) {
+        CACHE.invalidate(id);
+        CompromissoDAO.invalidateCache();
+    }
+
+    private static void publishDeleted(int id) {
+        ChangeBus.publish(ChangeBus.Table.CONTATOS, ChangeBus.Kind.DELETED, id);
+        ChangeBus.reset(ChangeBus.Table.COMPROMISSOS);
+    }
+
+    // nome, email, telefone and their keys, parameters 1-6 of INSERT_SQL and UPDATE_SQL
+    private static void bindColumns(PreparedStatement ps, Contato c) throws SQLException {
+        ps.setString(1, c.getNome());
+        ps.setString(2, c.getEmail());
+        ps.setString(3, c.getTelefone());
+        ps.setString(4, ContatoKeys.nome(c.getNome()));
+        // empty email/phone keys are stored as NULL, which the UNIQUE indexes do not compare
+        ps.setString(5, emptyToNull(ContatoKeys.email(c.getEmail())));
+        ps.setString(6, emptyToNull(ContatoKeys.telefone(c.getTelefone())));
+    }
+
+    static String emptyToNull(String key) {
+        return key.isEmpty() ? null : key;
+    }
+}
@@ -1,13 +1,33 @@
 package com.agenda.dao;
 
+import com.agenda.model.ContatoKeys;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
 
 public class Database {
-    private static final String URL = "jdbc:sqlite:agenda.db";
+    private static final String URL = "jdbc:sqlite:" + System.getProperty("agenda.db.path", "agenda.db");
+    // incrementar ao adicionar um passo em applyMigration
+    private static final int SCHEMA_VERSION = 7;
+    // linhas convertidas por transação na migração de datetime TEXT -> INTEGER
+    private static final int MIGRATION_BATCH_SIZE = 5000;
+    private static final int READ_POOL_SIZE = Integer.getInteger("agenda.db.readPoolSize", 4);
+    private static final long POOL_TIMEOUT_MS = Long.getLong("agenda.db.poolTimeoutMs", 10_000L);
+    private static final StorageProfile PROFILE = StorageProfile.fromSystemProperties();
+
+    // um único escritor serializado; leitores somente-leitura em paralelo (WAL permite ler durante a escrita)
+    private static final ConnectionPool WRITE_POOL = new ConnectionPool(URL, 1, POOL_TIMEOUT_MS,
+            PROFILE.connectionPragmas(true));
+    private static final ConnectionPool READ_POOL = new ConnectionPool(URL, READ_POOL_SIZE, POOL_TIMEOUT_MS,
+            PROFILE.connectionPragmas(false));
+    // UPDATE/DELETE adiados e agrupados em uma transação (desligado por padrão)
+    private static final WriteBehindBuffer WRITE_BEHIND = Boolean.getBoolean("agenda.db.writeBehind")
+            ? new WriteBehindBuffer(Long.getLong("agenda.db.writeBehindMillis", 1000L),
+                    Integer.getInteger("agenda.db.writeBehindMaxPending", 500))
+            : null;
 
     static {
         // initialize database on first load
@@ -18,14 +38,78 @@ public class Database {
         }
     }
 
+    /**
+     * Obtém a conexão de escrita (única, serializada). Fechar a conexão (try-with-resources) a devolve ao pool.
+     */
     public static Connection getConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(URL);
-        try (Statement s = conn.createStatement()) {
-            s.execute("PRAGMA foreign_keys = ON");
-        } catch (SQLException e) {
-            // ignore if not supported; connection still returned
-        }
-        return conn;
+        sync();
+        return WRITE_POOL.acquire();
+    }
+
+    /**
+     * Obtém uma conexão somente-leitura do pool de leitores, que não espera pelo escritor em modo WAL.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        sync();
+        return READ_POOL.acquire();
+    }
+
+    // usada pelo próprio WriteBehindBuffer para gravar o que está pendente
+    static Connection writerConnection() throws SQLException {
+        return WRITE_POOL.acquire();
+    }
+
+    // true dentro de uma seção de escrita da thread atual (conexão de escrita ainda não devolvida)
+    static boolean writerHeldByCurrentThread() {
+        return WRITE_POOL.isHeldByCurrentThread();
+    }
+
+    /** Buffer de escrita adiada, ou null se o modo write-behind estiver desligado. */
+    static WriteBehindBuffer writeBehind() {
+        return WRITE_BEHIND;
+    }
+
+    /**
+     * Grava agora as alterações adiadas pelo modo write-behind (nada a fazer se ele estiver desligado).
+     * Devolve false se alguma não pôde ser gravada.
+     */
+    public static boolean sync() {
+        return WRITE_BEHIND == null || WRITE_BEHIND.sync();
+    }
+
+    /**
+     * Contadores do modo write-behind (alterações pendentes, fundidas, gravadas), ou null se ele
+     * estiver desligado.
+     */
+    public static WriteBehindBuffer.Stats getWriteBehindStats() {
+        return WRITE_BEHIND == null ? null : WRITE_BEHIND.stats();
+    }
+
+    public static StorageProfile getStorageProfile() {
+        return PROFILE;
+    }
+
+    /**
+     * Contadores do pool de leitura: conexões abertas/em uso e tempo de espera.
+     */
+    public static ConnectionPool.Stats getReadPoolStats() {
+        return READ_POOL.stats();
+    }
+
+    /**
+     * Contadores do pool de escrita: conexões abertas/em uso e tempo de espera.
+     */
+    public static ConnectionPool.Stats getWritePoolStats() {
+        return WRITE_POOL.stats();
+    }
+
+    /**
+     * Grava as alterações adiadas e fecha as conexões ociosas dos pools (ex.: ao encerrar a aplicação).
+     */
+    public static void shutdown() {
+        if (WRITE_BEHIND != null) WRITE_BEHIND.shutdown();
+        READ_POOL.shutdown();
+        WRITE_POOL.shutdown();
     }
 
     private static void initDatabase() throws SQLException {
@@ -42,7 +126,7 @@ public class Database {
             stmt.executeUpdate("CREATE TABLE IF NOT EXISTS compromissos ("
                     + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
                     + "contato_id INTEGER NOT NULL,"
-                    + "datetime TEXT,"
+                    + "datetime INTEGER," // segundos desde a época (ver DateTimeCodec)
                     + "local TEXT,"
                     + "online INTEGER DEFAULT 0,"
                     + "descricao TEXT,"
@@ -50,33 +134,343 @@ public class Database {
                     + ");");
 
             // ensure descricao column exists for older DBs
-            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(compromissos)")) {
-                boolean found = false;
-                while (rs.next()) {
-                    String name = rs.getString("name");
-                    if ("descricao".equalsIgnoreCase(name)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    try {
-                        stmt.executeUpdate("ALTER TABLE compromissos ADD COLUMN descricao TEXT");
-                    } catch (SQLException ex) {
-                        // ignore if cannot alter
-                    }
+            if (!hasColumn(stmt, "compromissos", "descricao")) {
+                try {
+                    stmt.executeUpdate("ALTER TABLE compromissos ADD COLUMN descricao TEXT");
+                } catch (SQLException ex) {
+                    // ignore if cannot alter
                 }
             }
 
+            // bring older databases up to the current schema version
+            migrate(conn, stmt);
+
             // if empty, seed with sample data
             try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS cnt FROM contatos")) {
                 if (rs.next()) {
                     int cnt = rs.getInt("cnt");
                     if (cnt == 0) {
                         seed(stmt);
+                        fillContatoKeys(conn);
                     }
                 }
             }
+
+            // outside the migrations: a constraint blocked by duplicates is created once they are fixed
+            createContatoUniqueIndexes(stmt);
+        }
+    }
+
+    private static boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static String columnType(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return rs.getString("type");
+            }
+        }
+        return null;
+    }
+
+    private static int schemaVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Aplica, em ordem, os passos de migração ainda não executados neste arquivo.
+     * A versão aplicada fica em PRAGMA user_version; cada passo roda em sua própria transação.
+     */
+    private static void migrate(Connection conn, Statement stmt) throws SQLException {
+        int version = schemaVersion(stmt);
+        while (version < SCHEMA_VERSION) {
+            int next = version + 1;
+            conn.setAutoCommit(false);
+            try {
+                applyMigration(conn, stmt, next);
+                stmt.executeUpdate("PRAGMA user_version = " + next);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            version = next;
+        }
+    }
+
+    private static void applyMigration(Connection conn, Statement stmt, int version) throws SQLException {
+        switch (version) {
+            case 1:
+                // findByContatoId: WHERE contato_id = ? ORDER BY datetime -> busca pelo índice, sem sort
+                if (hasColumn(stmt, "compromissos", "datetime")) {
+                    stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_compromissos_contato_datetime "
+                            + "ON compromissos(contato_id, datetime, id)");
+                    // findAll: ORDER BY datetime (id desempata e cobre a paginação por (datetime, id))
+                    stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_compromissos_datetime "
+                            + "ON compromissos(datetime, id)");
+                }
+                // ContatoDAO.findAll: ORDER BY nome
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_contatos_nome ON contatos(nome, id)");
+                break;
+            case 2:
+                migrateDateTimeToEpoch(conn, stmt);
+                break;
+            case 3:
+                createContatoKeyColumns(conn, stmt);
+                break;
+            case 4:
+                createFullTextIndexes(stmt);
+                break;
+            case 5:
+                // CompromissoDAO.findConflicts: mesmo local (sem diferenciar maiúsculas) em um intervalo de datetime
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_compromissos_local_datetime "
+                        + "ON compromissos(lower(trim(local)), datetime)");
+                break;
+            case 6:
+                createRecorrenciaTables(stmt);
+                break;
+            case 7:
+                createContagemTables(stmt);
+                break;
+            default:
+                throw new SQLException("Migração desconhecida: " + version);
+        }
+    }
+
+    /**
+     * compromissos.datetime passa de TEXT 'yyyy-MM-dd HH:mm:ss' para INTEGER (segundos).
+     * Como o SQLite não altera o tipo de uma coluna, a tabela é recriada e as linhas são copiadas
+     * em lotes por id, com commit a cada lote. Se o processo for interrompido, a próxima abertura
+     * continua a partir do último id copiado.
+     */
+    private static void migrateDateTimeToEpoch(Connection conn, Statement stmt) throws SQLException {
+        if ("INTEGER".equalsIgnoreCase(columnType(stmt, "compromissos", "datetime"))) return;
+
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS compromissos_v2 ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "contato_id INTEGER NOT NULL,"
+                + "datetime INTEGER,"
+                + "local TEXT,"
+                + "online INTEGER DEFAULT 0,"
+                + "descricao TEXT,"
+                + "FOREIGN KEY(contato_id) REFERENCES contatos(id) ON DELETE CASCADE"
+                + ");");
+
+        String copy = "INSERT INTO compromissos_v2 (id, contato_id, datetime, local, online, descricao) "
+                + "SELECT id, contato_id, "
+                + "CASE WHEN typeof(datetime) = 'text' THEN CAST(strftime('%s', datetime) AS INTEGER) ELSE datetime END, "
+                + "local, online, descricao FROM compromissos WHERE id > ? ORDER BY id LIMIT ?";
+        long lastId;
+        try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM compromissos_v2")) {
+            lastId = rs.next() ? rs.getLong(1) : 0;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(copy)) {
+            while (true) {
+                ps.setLong(1, lastId);
+                ps.setInt(2, MIGRATION_BATCH_SIZE);
+                int copied = ps.executeUpdate();
+                if (copied == 0) break;
+                try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM compromissos_v2")) {
+                    if (rs.next()) lastId = rs.getLong(1);
+                }
+                conn.commit();
+            }
+        }
+
+        // preserva o contador do AUTOINCREMENT mesmo que as últimas linhas tenham sido apagadas
+        long seq = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'compromissos'")) {
+            if (rs.next()) seq = rs.getLong(1);
+        }
+        stmt.executeUpdate("DROP TABLE compromissos");
+        stmt.executeUpdate("ALTER TABLE compromissos_v2 RENAME TO compromissos");
+        stmt.executeUpdate("UPDATE sqlite_sequence SET seq = MAX(seq, " + seq + ") WHERE name = 'compromissos'");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_compromissos_contato_datetime ON compromissos(contato_id, datetime, id)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_compromissos_datetime ON compromissos(datetime, id)");
+    }
+
+    /**
+     * Colunas com as chaves de duplicidade calculadas em Java (ContatoKeys), gravadas pelo ContatoDAO,
+     * para que o banco e o DuplicateContatoIndex normalizem igual: lower/trim do SQLite só tratam
+     * ASCII e espaços. Chaves vazias de email e telefone ficam NULL. Os índices UNIQUE sobre elas são
+     * criados por {@link #createContatoUniqueIndexes}.
+     */
+    private static void createContatoKeyColumns(Connection conn, Statement stmt) throws SQLException {
+        for (String column : new String[]{"nome_chave", "email_chave", "telefone_chave"}) {
+            if (!hasColumn(stmt, "contatos", column)) stmt.executeUpdate("ALTER TABLE contatos ADD COLUMN " + column + " TEXT");
+        }
+        fillContatoKeys(conn);
+    }
+
+    /**
+     * Índices UNIQUE sobre as colunas de chave, para que o banco rejeite duplicados mesmo com vários
+     * escritores. Chamado a cada abertura: um banco que já tem contatos duplicados fica sem o índice
+     * correspondente (o erro é registrado) e ele é criado na primeira abertura depois da correção.
+     */
+    private static void createContatoUniqueIndexes(Statement stmt) {
+        createUniqueIndex(stmt, "CREATE UNIQUE INDEX IF NOT EXISTS ux_contatos_email_chave ON contatos(email_chave)");
+        createUniqueIndex(stmt, "CREATE UNIQUE INDEX IF NOT EXISTS ux_contatos_telefone_chave ON contatos(telefone_chave)");
+        createUniqueIndex(stmt, "CREATE UNIQUE INDEX IF NOT EXISTS ux_contatos_nome_chave ON contatos(nome_chave) "
+                + "WHERE email_chave IS NULL AND telefone_chave IS NULL AND nome_chave <> ''");
+    }
+
+    // computes the keys of rows written without them (older schema, seed); nome_chave is never NULL once set
+    private static void fillContatoKeys(Connection conn) throws SQLException {
+        String select = "SELECT id, nome, email, telefone FROM contatos WHERE nome_chave IS NULL";
+        String update = "UPDATE contatos SET nome_chave = ?, email_chave = ?, telefone_chave = ? WHERE id = ?";
+        try (Statement s = conn.createStatement(); ResultSet rs = s.executeQuery(select);
+             PreparedStatement ps = conn.prepareStatement(update)) {
+            int batched = 0;
+            while (rs.next()) {
+                ps.setString(1, ContatoKeys.nome(rs.getString(2)));
+                ps.setString(2, ContatoDAO.emptyToNull(ContatoKeys.email(rs.getString(3))));
+                ps.setString(3, ContatoDAO.emptyToNull(ContatoKeys.telefone(rs.getString(4))));
+                ps.setInt(4, rs.getInt(1));
+                ps.addBatch();
+                if (++batched % MIGRATION_BATCH_SIZE == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Índices FTS5 de conteúdo externo (o texto continua só nas tabelas originais; o índice guarda os
+     * termos e o rowid) mantidos por triggers em toda inserção, alteração e exclusão, inclusive as
+     * exclusões em cascata. O 'rebuild' indexa as linhas que já existiam.
+     * unicode61 com remove_diacritics ignora acentos e maiúsculas; contatos têm também índice de
+     * prefixos de 2 e 3 letras, para que a busca por iniciais não precise expandir milhares de termos.
+     */
+    private static void createFullTextIndexes(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS contatos_fts USING fts5(nome, email, telefone, "
+                + "content='contatos', content_rowid='id', tokenize='unicode61 remove_diacritics 2', prefix='2 3')");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contatos_fts_ai AFTER INSERT ON contatos BEGIN "
+                + "INSERT INTO contatos_fts(rowid, nome, email, telefone) VALUES (new.id, new.nome, new.email, new.telefone); END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contatos_fts_ad AFTER DELETE ON contatos BEGIN "
+                + "INSERT INTO contatos_fts(contatos_fts, rowid, nome, email, telefone) VALUES ('delete', old.id, old.nome, old.email, old.telefone); END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contatos_fts_au AFTER UPDATE OF nome, email, telefone ON contatos "
+                + "WHEN old.nome IS NOT new.nome OR old.email IS NOT new.email OR old.telefone IS NOT new.telefone BEGIN "
+                + "INSERT INTO contatos_fts(contatos_fts, rowid, nome, email, telefone) VALUES ('delete', old.id, old.nome, old.email, old.telefone); "
+                + "INSERT INTO contatos_fts(rowid, nome, email, telefone) VALUES (new.id, new.nome, new.email, new.telefone); END");
+        stmt.executeUpdate("INSERT INTO contatos_fts(contatos_fts) VALUES ('rebuild')");
+
+        // compromissos mudam muito de data/contato: o trigger de UPDATE só reindexa quando o texto muda
+        stmt.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS compromissos_fts USING fts5(local, descricao, "
+                + "content='compromissos', content_rowid='id', tokenize='unicode61 remove_diacritics 2')");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS compromissos_fts_ai AFTER INSERT ON compromissos BEGIN "
+                + "INSERT INTO compromissos_fts(rowid, local, descricao) VALUES (new.id, new.local, new.descricao); END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS compromissos_fts_ad AFTER DELETE ON compromissos BEGIN "
+                + "INSERT INTO compromissos_fts(compromissos_fts, rowid, local, descricao) VALUES ('delete', old.id, old.local, old.descricao); END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS compromissos_fts_au AFTER UPDATE OF local, descricao ON compromissos "
+                + "WHEN old.local IS NOT new.local OR old.descricao IS NOT new.descricao BEGIN "
+                + "INSERT INTO compromissos_fts(compromissos_fts, rowid, local, descricao) VALUES ('delete', old.id, old.local, old.descricao); "
+                + "INSERT INTO compromissos_fts(rowid, local, descricao) VALUES (new.id, new.local, new.descricao); END");
+        stmt.executeUpdate("INSERT INTO compromissos_fts(compromissos_fts) VALUES ('rebuild')");
+    }
+
+    /**
+     * Regras de repetição (uma por compromisso, que é a primeira ocorrência da série) e ocorrências
+     * canceladas. As ocorrências em si não são gravadas: CompromissoDAO.findOccurrences as calcula
+     * só para a janela consultada. Excluir o compromisso exclui a regra e as exceções (cascata).
+     */
+    private static void createRecorrenciaTables(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS recorrencias ("
+                + "compromisso_id INTEGER PRIMARY KEY,"
+                + "frequencia TEXT NOT NULL," // DIARIA, SEMANAL ou MENSAL
+                + "intervalo INTEGER NOT NULL DEFAULT 1,"
+                + "repeticoes INTEGER," // total de ocorrências; NULL = sem limite
+                + "ate INTEGER," // segundos, como compromissos.datetime; NULL = sem data final
+                + "FOREIGN KEY(compromisso_id) REFERENCES compromissos(id) ON DELETE CASCADE"
+                + ");");
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS recorrencia_excecoes ("
+                + "compromisso_id INTEGER NOT NULL,"
+                + "datetime INTEGER NOT NULL,"
+                + "PRIMARY KEY (compromisso_id, datetime),"
+                + "FOREIGN KEY(compromisso_id) REFERENCES recorrencias(compromisso_id) ON DELETE CASCADE"
+                + ") WITHOUT ROWID;");
+        // exceções lidas por janela de datas, não por série
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_recorrencia_excecoes_datetime ON recorrencia_excecoes(datetime)");
+    }
+
+    /**
+     * Contagens de compromissos por dia e por contato, separadas em online e presencial, mantidas por
+     * triggers em toda inserção, alteração e exclusão (inclusive em cascata), para que os totais não
+     * dependam de percorrer a tabela. Cada linha de compromissos conta uma vez: uma série repetida
+     * conta só no dia da primeira ocorrência. Linhas que chegam a zero são apagadas.
+     */
+    private static void createContagemTables(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS contagem_dia ("
+                + "dia INTEGER NOT NULL," // dias desde 1970-01-01 (floor(datetime / 86400))
+                + "online INTEGER NOT NULL,"
+                + "total INTEGER NOT NULL,"
+                + "PRIMARY KEY (dia, online)"
+                + ") WITHOUT ROWID;");
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS contagem_contato ("
+                + "contato_id INTEGER NOT NULL,"
+                + "online INTEGER NOT NULL,"
+                + "total INTEGER NOT NULL,"
+                + "PRIMARY KEY (contato_id, online)"
+                + ") WITHOUT ROWID;");
+
+        String addNew = countIncrement("new");
+        String removeOld = countDecrement("old");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contagem_ai AFTER INSERT ON compromissos BEGIN " + addNew + " END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contagem_ad AFTER DELETE ON compromissos BEGIN " + removeOld + " END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS contagem_au AFTER UPDATE OF contato_id, datetime, online ON compromissos "
+                + "WHEN old.contato_id IS NOT new.contato_id OR " + epochDay("old") + " IS NOT " + epochDay("new")
+                + " OR " + onlineFlag("old") + " <> " + onlineFlag("new") + " BEGIN " + removeOld + " " + addNew + " END");
+
+        stmt.executeUpdate("INSERT INTO contagem_dia (dia, online, total) SELECT " + epochDay("compromissos") + ", "
+                + onlineFlag("compromissos") + ", count(*) FROM compromissos WHERE datetime IS NOT NULL GROUP BY 1, 2");
+        stmt.executeUpdate("INSERT INTO contagem_contato (contato_id, online, total) SELECT contato_id, "
+                + onlineFlag("compromissos") + ", count(*) FROM compromissos GROUP BY 1, 2");
+    }
+
+    // trigger statements counting the row alias.* in both tables
+    private static String countIncrement(String row) {
+        String dia = epochDay(row);
+        String online = onlineFlag(row);
+        return "INSERT INTO contagem_dia (dia, online, total) SELECT " + dia + ", " + online + ", 1 WHERE " + row + ".datetime IS NOT NULL "
+                + "ON CONFLICT (dia, online) DO UPDATE SET total = total + 1; "
+                + "INSERT INTO contagem_contato (contato_id, online, total) VALUES (" + row + ".contato_id, " + online + ", 1) "
+                + "ON CONFLICT (contato_id, online) DO UPDATE SET total = total + 1;";
+    }
+
+    private static String countDecrement(String row) {
+        String dia = epochDay(row);
+        String online = onlineFlag(row);
+        String contato = row + ".contato_id";
+        return "UPDATE contagem_dia SET total = total - 1 WHERE dia = " + dia + " AND online = " + online + "; "
+                + "DELETE FROM contagem_dia WHERE dia = " + dia + " AND online = " + online + " AND total <= 0; "
+                + "UPDATE contagem_contato SET total = total - 1 WHERE contato_id = " + contato + " AND online = " + online + "; "
+                + "DELETE FROM contagem_contato WHERE contato_id = " + contato + " AND online = " + online + " AND total <= 0;";
+    }
+
+    // dia (floor, também para datas antes de 1970) de row.datetime; NULL se não há data
+    private static String epochDay(String row) {
+        String dt = row + ".datetime";
+        return "((" + dt + " - ((" + dt + " % 86400) + 86400) % 86400) / 86400)";
+    }
+
+    private static String onlineFlag(String row) {
+        return "(coalesce(" + row + ".online, 0) <> 0)";
+    }
+
+    private static void createUniqueIndex(Statement stmt, String sql) {
+        try {
+            stmt.executeUpdate(sql);
+        } catch (SQLException e) {
+            // existing duplicate rows: keep going without this constraint, retried on the next start
+            e.printStackTrace();
         }
     }
 
@@ -90,11 +484,11 @@ public class Database {
         stmt.executeBatch();
 
         // seed some appointments (compromissos) for these contacts
-        // using 'yyyy-MM-dd HH:mm:ss' format and including a short descricao
-        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (1, '2025-12-01 10:00:00', 'Sala 101', 0, 'Reunião inicial')");
-        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (2, '2025-12-02 14:30:00', 'Sala 202', 0, 'Apresentação de projeto')");
-        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (1, '2025-12-05 09:00:00', 'Zoom: https://zoom.us/j/123', 1, 'Chamada com cliente')");
-        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (3, '2025-12-10 16:00:00', '', 0, 'Check-up')");
+        // datetime stored as epoch seconds via strftime('%s', ...), including a short descricao
+        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (1, strftime('%s', '2025-12-01 10:00:00'), 'Sala 101', 0, 'Reunião inicial')");
+        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (2, strftime('%s', '2025-12-02 14:30:00'), 'Sala 202', 0, 'Apresentação de projeto')");
+        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (1, strftime('%s', '2025-12-05 09:00:00'), 'Zoom: https://zoom.us/j/123', 1, 'Chamada com cliente')");
+        stmt.addBatch("INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (3, strftime('%s', '2025-12-10 16:00:00'), '', 0, 'Check-up')");
         stmt.executeBatch();
     }
 }
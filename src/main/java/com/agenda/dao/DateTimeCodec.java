@@ -0,0 +1,21 @@
+package com.agenda.dao;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversão entre LocalDateTime e a coluna INTEGER compromissos.datetime.
+ * O valor gravado são os segundos do "relógio de parede" interpretado como UTC, o mesmo que
+ * strftime('%s', 'yyyy-MM-dd HH:mm:ss') produz no SQLite, então não há ajuste de fuso/horário de verão.
+ */
+final class DateTimeCodec {
+    private DateTimeCodec() {}
+
+    static long toEpoch(LocalDateTime dt) {
+        return dt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime fromEpoch(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,148 @@
+package com.agenda.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache LRU limitado de entidades por id, compartilhado por todas as instâncias de um DAO.
+ * <p>
+ * Guarda cópias e devolve cópias ({@code copy}), já que as telas alteram os objetos que recebem antes
+ * de chamar update. Toda escrita feita pelo DAO invalida (ou substitui) a entrada; para que uma
+ * leitura que começou antes de uma escrita não recoloque o valor antigo, {@link #putIfFresh} só
+ * grava se não houve invalidação desde {@link #stamp()}. Thread-safe.
+ */
+public class EntityCache<V> {
+    private final int maxEntries;
+    private final UnaryOperator<V> copy;
+    private final LinkedHashMap<Integer, V> entries;
+    // resultado completo de findAll (quando cabe no limite); descartado em qualquer escrita
+    private List<V> all;
+    // incrementado a cada invalidação
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    EntityCache(int maxEntries, UnaryOperator<V> copy) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.copy = copy;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                if (size() <= EntityCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /** Cópia da entidade em cache, ou null (conta como acerto ou falta). */
+    synchronized V get(int id) {
+        V v = entries.get(id);
+        if (v == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy.apply(v);
+    }
+
+    /** Cópia da lista completa guardada por {@link #putAllIfFresh}, ou null. */
+    synchronized List<V> getAll() {
+        if (all == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        List<V> list = new ArrayList<>(all.size());
+        for (V v : all) list.add(copy.apply(v));
+        return list;
+    }
+
+    /**
+     * Guarda a lista completa (se couber em {@code maxEntries}) e indexa seus itens por id.
+     */
+    synchronized void putAllIfFresh(List<V> list, ToIntFunction<V> id, long stamp) {
+        if (stamp != version || list.size() > maxEntries) return;
+        List<V> copies = new ArrayList<>(list.size());
+        for (V v : list) {
+            V c = copy.apply(v);
+            copies.add(c);
+            entries.put(id.applyAsInt(c), c);
+        }
+        all = copies;
+    }
+
+    /** Marca o início de uma leitura no banco; ver {@link #putIfFresh}. */
+    synchronized long stamp() {
+        return version;
+    }
+
+    /** Guarda o valor lido do banco, a menos que alguma escrita tenha invalidado o cache desde {@code stamp}. */
+    synchronized void putIfFresh(int id, V value, long stamp) {
+        if (value == null || maxEntries == 0 || stamp != version) return;
+        entries.put(id, copy.apply(value));
+    }
+
+    /** Substitui a entrada pelo novo estado gravado pelo próprio DAO. */
+    synchronized void put(int id, V value) {
+        version++;
+        invalidations++;
+        all = null;
+        if (value == null || maxEntries == 0) entries.remove(id);
+        else entries.put(id, copy.apply(value));
+    }
+
+    synchronized void invalidate(int id) {
+        version++;
+        invalidations++;
+        all = null;
+        entries.remove(id);
+    }
+
+    synchronized void invalidateAll() {
+        version++;
+        invalidations++;
+        all = null;
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(maxEntries, entries.size(), hits, misses, evictions, invalidations);
+    }
+
+    public static final class Stats {
+        public final int maxEntries;
+        public final int size;
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long invalidations;
+
+        Stats(int maxEntries, int size, long hits, long misses, long evictions, long invalidations) {
+            this.maxEntries = maxEntries;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Cache[max=" + maxEntries + ", size=" + size + ", hits=" + hits + ", misses=" + misses
+                    + ", evictions=" + evictions + ", invalidations=" + invalidations + "]";
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.agenda.dao;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converte o texto digitado em uma busca FTS5 e repete a mesma regra em memória.
+ * <p>
+ * O texto é quebrado em palavras (sequências de letras e dígitos, como o tokenizer unicode61);
+ * cada palavra vira um prefixo entre aspas ({@code "joa"*}) e todas precisam aparecer. Aspas,
+ * operadores e demais símbolos digitados não chegam ao MATCH, então qualquer texto é uma busca válida.
+ */
+public final class FullTextQuery {
+    private FullTextQuery() {
+    }
+
+    /** Expressão para {@code MATCH ?}, ou null se o texto não tem nenhuma palavra. */
+    static String expression(String text) {
+        List<String> terms = terms(text);
+        if (terms.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String t : terms) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append('"').append(t).append("\"*");
+        }
+        return sb.toString();
+    }
+
+    /** true se o texto não tem nenhuma palavra pesquisável (busca vazia). */
+    public static boolean isBlank(String text) {
+        return terms(text).isEmpty();
+    }
+
+    /**
+     * Avalia a busca sobre os valores informados, sem ir ao banco (ex.: para saber se um registro
+     * alterado continua no resultado). Ignora acentos e maiúsculas, como o índice.
+     */
+    public static boolean matches(String text, String... values) {
+        List<String> terms = terms(text);
+        if (terms.isEmpty()) return true;
+        List<String> words = new ArrayList<>();
+        for (String v : values) words.addAll(terms(v));
+        for (String t : terms) {
+            boolean found = false;
+            for (String w : words) {
+                if (w.startsWith(t)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) return terms;
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char ch = folded.charAt(i);
+            if (Character.getType(ch) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(ch)) {
+                word.append(ch);
+            } else if (word.length() > 0) {
+                terms.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) terms.add(word.toString());
+        return terms;
+    }
+}
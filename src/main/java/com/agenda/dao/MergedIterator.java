@@ -0,0 +1,50 @@
+package com.agenda.dao;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Intercala k iteradores já ordenados em um só, também ordenado (merge de k vias com heap):
+ * O(log k) por elemento, consumindo cada fonte só quando o próximo elemento dela é necessário.
+ * Em empate, a ordem entre fontes não é definida.
+ */
+final class MergedIterator<T> implements Iterator<T> {
+    private static final class Head<T> {
+        final Iterator<? extends T> source;
+        T value;
+
+        Head(Iterator<? extends T> source) {
+            this.source = source;
+            this.value = source.next();
+        }
+    }
+
+    private final PriorityQueue<Head<T>> heap;
+
+    MergedIterator(Collection<? extends Iterator<? extends T>> sources, Comparator<? super T> order) {
+        this.heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value, b.value));
+        for (Iterator<? extends T> it : sources) {
+            if (it.hasNext()) heap.add(new Head<>(it));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heap.poll();
+        if (head == null) throw new NoSuchElementException();
+        T value = head.value;
+        if (head.source.hasNext()) {
+            head.value = head.source.next();
+            heap.add(head);
+        }
+        return value;
+    }
+}
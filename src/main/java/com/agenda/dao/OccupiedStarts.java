@@ -0,0 +1,113 @@
+package com.agenda.dao;
+
+import com.agenda.model.Compromisso;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Inícios ocupados em ordem, lidos como um {@link java.sql.ResultSet}: {@link #next()} avança e
+ * {@link #epochSecond()} devolve o início atual como segundos do relógio de parede em UTC
+ * ({@code LocalDateTime.toEpochSecond(ZoneOffset.UTC)}), sem criar um objeto por ocorrência.
+ * <p>
+ * Cada contato é um {@code long[]} já ordenado com um cursor; as séries repetidas são expandidas sob
+ * demanda. O merge de k vias usa um heap próprio sobre as fontes, ordenado pelo valor atual de cada uma.
+ */
+public final class OccupiedStarts {
+    private abstract static class Source {
+        long head;
+
+        // moves head to the next start; false when exhausted
+        abstract boolean advance();
+    }
+
+    private static final class Run extends Source {
+        private final long[] starts;
+        private final int size;
+        private int next;
+
+        Run(long[] starts, int size) {
+            this.starts = starts;
+            this.size = size;
+        }
+
+        @Override
+        boolean advance() {
+            if (next == size) return false;
+            head = starts[next++];
+            return true;
+        }
+    }
+
+    private static final class Series extends Source {
+        private final Iterator<Compromisso> occurrences;
+
+        Series(Iterator<Compromisso> occurrences) {
+            this.occurrences = occurrences;
+        }
+
+        @Override
+        boolean advance() {
+            if (!occurrences.hasNext()) return false;
+            head = DateTimeCodec.toEpoch(occurrences.next().getDateTime());
+            return true;
+        }
+    }
+
+    private final List<Source> sources = new ArrayList<>();
+    private Source[] heap;
+    private int size;
+    private long current;
+
+    OccupiedStarts() {
+    }
+
+    // the first size entries of starts, already in order
+    void addRun(long[] starts, int size) {
+        if (size > 0) sources.add(new Run(starts, size));
+    }
+
+    void addSeries(Iterator<Compromisso> occurrences) {
+        sources.add(new Series(occurrences));
+    }
+
+    // builds the heap; called once, after the last add
+    OccupiedStarts start() {
+        heap = new Source[sources.size()];
+        for (Source s : sources) {
+            if (s.advance()) heap[size++] = s;
+        }
+        sources.clear();
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+        return this;
+    }
+
+    /** Avança para o próximo início; false quando acabaram. */
+    public boolean next() {
+        if (size == 0) return false;
+        Source top = heap[0];
+        current = top.head;
+        if (!top.advance()) heap[0] = heap[--size];
+        siftDown(0);
+        return true;
+    }
+
+    /** O início atual (válido depois de um {@link #next()} que devolveu true). */
+    public long epochSecond() {
+        return current;
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) return;
+            int c = l + 1 < size && heap[l + 1].head < heap[l].head ? l + 1 : l;
+            if (heap[i].head <= heap[c].head) return;
+            Source t = heap[i];
+            heap[i] = heap[c];
+            heap[c] = t;
+            i = c;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.agenda.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Configuração de armazenamento do SQLite (journal, synchronous, mmap, cache e busy_timeout).
+ * <p>
+ * Perfis prontos: {@link #LEGACY} (rollback journal, comportamento original) e {@link #WAL}
+ * (leitores concorrentes com um único escritor). O perfil usado por {@link Database} vem da
+ * propriedade de sistema {@code agenda.db.profile} e cada valor pode ser sobrescrito por
+ * {@code agenda.db.synchronous}, {@code agenda.db.mmapSize}, {@code agenda.db.cacheSize}
+ * e {@code agenda.db.busyTimeoutMs}.
+ */
+public final class StorageProfile {
+    public static final StorageProfile LEGACY = new StorageProfile("legacy", "DELETE", "FULL", 0L, -2000, 5000);
+    public static final StorageProfile WAL = new StorageProfile("wal", "WAL", "NORMAL", 256L * 1024 * 1024, -16000, 5000);
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    private final long mmapSize;
+    private final int cacheSize;
+    private final int busyTimeoutMillis;
+
+    public StorageProfile(String name, String journalMode, String synchronous, long mmapSize, int cacheSize, int busyTimeoutMillis) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public static StorageProfile fromSystemProperties() {
+        String p = System.getProperty("agenda.db.profile", WAL.name).trim().toLowerCase(Locale.ROOT);
+        StorageProfile base = LEGACY.name.equals(p) ? LEGACY : WAL;
+        return new StorageProfile(base.name,
+                base.journalMode,
+                System.getProperty("agenda.db.synchronous", base.synchronous),
+                Long.getLong("agenda.db.mmapSize", base.mmapSize),
+                Integer.getInteger("agenda.db.cacheSize", base.cacheSize),
+                Integer.getInteger("agenda.db.busyTimeoutMs", base.busyTimeoutMillis));
+    }
+
+    public String getName() { return name; }
+    public String getJournalMode() { return journalMode; }
+    public String getSynchronous() { return synchronous; }
+    public long getMmapSize() { return mmapSize; }
+    public int getCacheSize() { return cacheSize; }
+    public int getBusyTimeoutMillis() { return busyTimeoutMillis; }
+
+    public boolean isWal() {
+        return "WAL".equalsIgnoreCase(journalMode);
+    }
+
+    /**
+     * PRAGMAs aplicados uma vez a cada conexão física. journal_mode é persistido no arquivo,
+     * por isso só a conexão de escrita o altera.
+     */
+    String[] connectionPragmas(boolean writer) {
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA foreign_keys = ON");
+        pragmas.add("PRAGMA busy_timeout = " + busyTimeoutMillis);
+        if (writer) pragmas.add("PRAGMA journal_mode = " + journalMode);
+        pragmas.add("PRAGMA synchronous = " + synchronous);
+        pragmas.add("PRAGMA cache_size = " + cacheSize);
+        pragmas.add("PRAGMA mmap_size = " + mmapSize);
+        if (!writer) pragmas.add("PRAGMA query_only = ON");
+        return pragmas.toArray(new String[0]);
+    }
+
+    @Override
+    public String toString() {
+        return name + "[journal=" + journalMode + ", synchronous=" + synchronous + ", mmap=" + mmapSize
+                + ", cache=" + cacheSize + ", busyTimeout=" + busyTimeoutMillis + "ms]";
+    }
+}
@@ -0,0 +1,289 @@
+package com.agenda.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Modo write-behind (opcional, {@code -Dagenda.db.writeBehind=true}): UPDATE e DELETE feitos pelos DAOs
+ * ficam em memória e são gravados juntos em uma única transação, a cada {@code flushIntervalMillis} ou
+ * quando {@code maxPending} linhas se acumulam.
+ * <p>
+ * Alterações repetidas do mesmo id são fundidas (só o último estado é gravado) e um DELETE descarta o
+ * UPDATE pendente. A ordem entre ids diferentes é preservada. Para que quem lê veja as próprias
+ * escritas, {@link Database} chama {@link #sync()} antes de entregar qualquer conexão; o custo é
+ * nulo quando não há nada pendente. {@link Database#shutdown()} também faz o sync.
+ * <p>
+ * Os DAOs devolvem true assim que a alteração entra no buffer. Se a gravação em lote falhar (ex.:
+ * violação de UNIQUE), as operações são reaplicadas uma a uma e as que continuarem falhando são
+ * descartadas, registradas no log e contadas em {@link Stats#failedRows}. Se não for possível obter a
+ * conexão de escrita, o lote volta para o buffer e é gravado no próximo ciclo.
+ */
+public class WriteBehindBuffer {
+    /** Tabela que aceita escritas adiadas: SQL de UPDATE (com binder) e de DELETE por id. */
+    static final class Table<T> {
+        final String name;
+        final String updateSql;
+        final Batches.Binder<T> binder;
+        final String deleteSql;
+
+        Table(String name, String updateSql, Batches.Binder<T> binder, String deleteSql) {
+            this.name = name;
+            this.updateSql = updateSql;
+            this.binder = binder;
+            this.deleteSql = deleteSql;
+        }
+    }
+
+    private static final Object DELETE = new Object();
+
+    private static final class Key {
+        final Table<?> table;
+        final int id;
+
+        Key(Table<?> table, int id) {
+            this.table = table;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.table == table && k.id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table.name, id);
+        }
+    }
+
+    private final int maxPending;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService timer;
+    // ordem de chegada; o valor é o último estado (snapshot da entidade) ou DELETE
+    private LinkedHashMap<Key, Object> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private long enqueued;
+    private long coalesced;
+    private long flushes;
+    private long flushedRows;
+    private long failedRows;
+    private long totalFlushMillis;
+    private long maxFlushMillis;
+
+    WriteBehindBuffer(long flushIntervalMillis, int maxPending) {
+        this.maxPending = Math.max(1, maxPending);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agenda-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, flushIntervalMillis);
+        timer.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Enfileira o novo estado da linha {@code id}; {@code snapshot} não deve mais ser alterado. */
+    <T> void update(Table<T> table, int id, T snapshot) {
+        put(new Key(table, id), snapshot);
+    }
+
+    void delete(Table<?> table, int id) {
+        put(new Key(table, id), DELETE);
+    }
+
+    private void put(Key key, Object value) {
+        boolean full;
+        boolean now;
+        synchronized (this) {
+            enqueued++;
+            if (pending.put(key, value) != null) coalesced++;
+            // after shutdown there is no timer any more: write through
+            now = closed;
+            full = !now && pending.size() >= maxPending && !flushScheduled;
+            if (full) flushScheduled = true;
+        }
+        if (now) sync();
+        else if (full) timer.execute(this::sync);
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Grava agora tudo o que está pendente e só retorna depois disso (inclusive se outra gravação
+     * estava em andamento). Devolve false se alguma linha não pôde ser gravada. Numa thread que
+     * está com a conexão de escrita não grava nada (a gravação esperaria por essa mesma conexão):
+     * o que estiver pendente fica para o próximo ciclo.
+     */
+    public boolean sync() {
+        if (!hasPending() && !flushLock.isLocked()) return true;
+        if (Database.writerHeldByCurrentThread()) return !hasPending();
+        flushLock.lock();
+        try {
+            LinkedHashMap<Key, Object> batch;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pending.isEmpty()) return true;
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            return flush(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Para o timer depois de gravar o que está pendente. */
+    void shutdown() {
+        synchronized (this) {
+            closed = true;
+        }
+        timer.shutdown();
+        sync();
+    }
+
+    private boolean flush(LinkedHashMap<Key, Object> batch) {
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = Database.writerConnection();
+        } catch (SQLException e) {
+            // nothing was written: keep the batch for the next tick
+            e.printStackTrace();
+            requeue(batch);
+            return false;
+        }
+        int failed = 0;
+        try (conn) {
+            conn.setAutoCommit(false);
+            Map<String, PreparedStatement> statements = new HashMap<>();
+            try {
+                try {
+                    // consecutive ops on the same statement share one executeBatch
+                    PreparedStatement current = null;
+                    for (Map.Entry<Key, Object> e : batch.entrySet()) {
+                        PreparedStatement ps = bind(conn, statements, e.getKey(), e.getValue());
+                        if (current != null && current != ps) current.executeBatch();
+                        ps.addBatch();
+                        current = ps;
+                    }
+                    if (current != null) current.executeBatch();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    for (PreparedStatement ps : statements.values()) ps.clearBatch();
+                    failed = applyOneByOne(conn, statements, batch, e);
+                }
+                conn.commit();
+            } finally {
+                for (PreparedStatement ps : statements.values()) ps.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            failed = batch.size();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        synchronized (this) {
+            flushes++;
+            flushedRows += batch.size() - failed;
+            failedRows += failed;
+            totalFlushMillis += millis;
+            maxFlushMillis = Math.max(maxFlushMillis, millis);
+        }
+        return failed == 0;
+    }
+
+    // devolve ao buffer um lote não gravado, antes do que chegou depois; o estado mais novo de cada id prevalece
+    private synchronized void requeue(LinkedHashMap<Key, Object> batch) {
+        batch.putAll(pending);
+        pending = batch;
+    }
+
+    // reaplica uma a uma, em passadas, até não haver progresso (ex.: troca de emails entre dois contatos)
+    private int applyOneByOne(Connection conn, Map<String, PreparedStatement> statements, LinkedHashMap<Key, Object> batch, SQLException cause) throws SQLException {
+        List<Map.Entry<Key, Object>> left = new ArrayList<>(batch.entrySet());
+        SQLException last = cause;
+        boolean progress = true;
+        while (!left.isEmpty() && progress) {
+            progress = false;
+            for (Iterator<Map.Entry<Key, Object>> it = left.iterator(); it.hasNext(); ) {
+                Map.Entry<Key, Object> e = it.next();
+                try {
+                    bind(conn, statements, e.getKey(), e.getValue()).executeUpdate();
+                    it.remove();
+                    progress = true;
+                } catch (SQLException ex) {
+                    last = ex;
+                }
+            }
+        }
+        if (!left.isEmpty()) {
+            System.err.println("write-behind: " + left.size() + " alteração(ões) descartada(s)");
+            last.printStackTrace();
+        }
+        return left.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PreparedStatement bind(Connection conn, Map<String, PreparedStatement> statements, Key key, Object value) throws SQLException {
+        Table<Object> table = (Table<Object>) key.table;
+        String sql = value == DELETE ? table.deleteSql : table.updateSql;
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null) {
+            ps = conn.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+        if (value == DELETE) {
+            ps.setInt(1, key.id);
+        } else {
+            table.binder.bind(ps, value);
+        }
+        return ps;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(pending.size(), enqueued, coalesced, flushes, flushedRows, failedRows, totalFlushMillis, maxFlushMillis);
+    }
+
+    public static final class Stats {
+        public final int pending;
+        public final long enqueued;
+        public final long coalesced;
+        public final long flushes;
+        public final long flushedRows;
+        public final long failedRows;
+        public final long totalFlushMillis;
+        public final long maxFlushMillis;
+
+        Stats(int pending, long enqueued, long coalesced, long flushes, long flushedRows, long failedRows, long totalFlushMillis, long maxFlushMillis) {
+            this.pending = pending;
+            this.enqueued = enqueued;
+            this.coalesced = coalesced;
+            this.flushes = flushes;
+            this.flushedRows = flushedRows;
+            this.failedRows = failedRows;
+            this.totalFlushMillis = totalFlushMillis;
+            this.maxFlushMillis = maxFlushMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "WriteBehind[pending=" + pending + ", enqueued=" + enqueued + ", coalesced=" + coalesced
+                    + ", flushes=" + flushes + ", flushedRows=" + flushedRows + ", failedRows=" + failedRows
+                    + ", totalFlushMs=" + totalFlushMillis + ", maxFlushMs=" + maxFlushMillis + "]";
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.agenda.model;
+
+/**
+ * Número de compromissos de um dia, semana ou contato, separados em presenciais e online.
+ */
+public class Contagem {
+    public static final Contagem ZERO = new Contagem(0, 0);
+
+    private final long presenciais;
+    private final long online;
+
+    public Contagem(long presenciais, long online) {
+        this.presenciais = presenciais;
+        this.online = online;
+    }
+
+    public long getPresenciais() {
+        return presenciais;
+    }
+
+    public long getOnline() {
+        return online;
+    }
+
+    public long getTotal() {
+        return presenciais + online;
+    }
+
+    public Contagem plus(Contagem other) {
+        return new Contagem(presenciais + other.presenciais, online + other.online);
+    }
+
+    @Override
+    public String toString() {
+        return getTotal() + " (" + presenciais + " presenciais, " + online + " online)";
+    }
+}
@@ -0,0 +1,70 @@
+package com.agenda.model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Chaves normalizadas usadas para detectar contatos duplicados: email e nome sem espaços nas pontas,
+ * em minúsculas (Unicode, com acentos compostos da mesma forma), e telefone só com dígitos.
+ * <p>
+ * A normalização existe só aqui: o {@code ContatoDAO} grava essas chaves em colunas próprias (com os
+ * índices UNIQUE) e o {@code DuplicateContatoIndex} usa as mesmas funções, então a verificação em
+ * memória e a do banco não divergem. Valores nulos ou em branco viram "".
+ */
+public final class ContatoKeys {
+    private ContatoKeys() {
+    }
+
+    public static String email(String email) {
+        return email == null ? "" : fold(email);
+    }
+
+    /** Nome normalizado; espaços internos repetidos (inclusive tabs e quebras de linha) contam como um. */
+    public static String nome(String nome) {
+        if (nome == null) return "";
+        String folded = fold(nome);
+        StringBuilder sb = new StringBuilder(folded.length());
+        boolean gap = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char ch = folded.charAt(i);
+            if (isSpace(ch)) {
+                gap = sb.length() > 0;
+                continue;
+            }
+            if (gap) sb.append(' ');
+            gap = false;
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    /** Apenas os dígitos do telefone (sem compilar regex a cada chamada). */
+    public static String telefone(String telefone) {
+        if (telefone == null) return "";
+        int n = telefone.length();
+        int i = 0;
+        while (i < n && Character.isDigit(telefone.charAt(i))) i++;
+        if (i == n) return telefone;
+        StringBuilder sb = new StringBuilder(n);
+        sb.append(telefone, 0, i);
+        for (; i < n; i++) {
+            char ch = telefone.charAt(i);
+            if (Character.isDigit(ch)) sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private static String fold(String s) {
+        if (!Normalizer.isNormalized(s, Normalizer.Form.NFC)) s = Normalizer.normalize(s, Normalizer.Form.NFC);
+        int start = 0;
+        int end = s.length();
+        while (start < end && isSpace(s.charAt(start))) start++;
+        while (end > start && isSpace(s.charAt(end - 1))) end--;
+        return s.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    // also catches no-break spaces, which String.strip() keeps
+    private static boolean isSpace(char ch) {
+        return Character.isWhitespace(ch) || Character.isSpaceChar(ch);
+    }
+}
@@ -0,0 +1,112 @@
+package com.agenda.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Regra de repetição de um compromisso: a cada {@code intervalo} dias, semanas ou meses a partir da
+ * data do próprio compromisso, limitada por número de ocorrências e/ou data final (as duas são
+ * opcionais; sem nenhuma a série não termina). Ocorrências canceladas ficam em {@code excecoes}.
+ * <p>
+ * A ocorrência k é sempre calculada a partir do início (início + k * intervalo), sem acumular passos:
+ * uma série mensal no dia 31 cai no último dia dos meses mais curtos e volta ao dia 31 depois.
+ */
+public class Recorrencia {
+    public enum Frequencia { DIARIA, SEMANAL, MENSAL }
+
+    private Frequencia frequencia;
+    private int intervalo = 1;
+    private Integer repeticoes;
+    private LocalDateTime ate;
+    private final Set<LocalDateTime> excecoes = new TreeSet<>();
+
+    public Recorrencia() {}
+
+    public Recorrencia(Frequencia frequencia, int intervalo, Integer repeticoes, LocalDateTime ate) {
+        this.frequencia = frequencia;
+        this.intervalo = intervalo;
+        this.repeticoes = repeticoes;
+        this.ate = ate;
+    }
+
+    public Frequencia getFrequencia() { return frequencia; }
+    public void setFrequencia(Frequencia frequencia) { this.frequencia = frequencia; }
+
+    public int getIntervalo() { return intervalo; }
+    public void setIntervalo(int intervalo) { this.intervalo = intervalo; }
+
+    /** Total de ocorrências (incluindo as canceladas), ou null se não há limite. */
+    public Integer getRepeticoes() { return repeticoes; }
+    public void setRepeticoes(Integer repeticoes) { this.repeticoes = repeticoes; }
+
+    /** Nenhuma ocorrência começa depois deste instante; null se não há data final. */
+    public LocalDateTime getAte() { return ate; }
+    public void setAte(LocalDateTime ate) { this.ate = ate; }
+
+    /** Inícios das ocorrências canceladas (conjunto alterável). */
+    public Set<LocalDateTime> getExcecoes() { return excecoes; }
+
+    /** Início da ocorrência k (a primeira é k = 0, o próprio compromisso). */
+    public LocalDateTime ocorrencia(LocalDateTime inicio, long k) {
+        long n = k * Math.max(1, intervalo);
+        return switch (frequencia) {
+            case DIARIA -> inicio.plusDays(n);
+            case SEMANAL -> inicio.plusWeeks(n);
+            case MENSAL -> inicio.plusMonths(n);
+        };
+    }
+
+    /**
+     * Inícios das ocorrências em [from, to), em ordem, calculados sob demanda. A primeira é encontrada
+     * por conta (sem percorrer as anteriores), então o custo depende só do tamanho da janela.
+     */
+    public Iterator<LocalDateTime> ocorrencias(LocalDateTime inicio, LocalDateTime from, LocalDateTime to) {
+        long first = primeiraEmOuDepois(inicio, from);
+        return new Iterator<>() {
+            private long k = first;
+            private LocalDateTime next = advance();
+
+            private LocalDateTime advance() {
+                while (true) {
+                    if (repeticoes != null && k >= repeticoes) return null;
+                    LocalDateTime dt = ocorrencia(inicio, k++);
+                    if (!dt.isBefore(to) || (ate != null && dt.isAfter(ate))) return null;
+                    if (!excecoes.contains(dt)) return dt;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public LocalDateTime next() {
+                if (next == null) throw new NoSuchElementException();
+                LocalDateTime dt = next;
+                next = advance();
+                return dt;
+            }
+        };
+    }
+
+    // menor k com ocorrencia(k) >= from
+    private long primeiraEmOuDepois(LocalDateTime inicio, LocalDateTime from) {
+        if (!from.isAfter(inicio)) return 0;
+        int step = Math.max(1, intervalo);
+        long k = switch (frequencia) {
+            case DIARIA -> Duration.between(inicio, from).toDays() / step;
+            case SEMANAL -> Duration.between(inicio, from).toDays() / 7 / step;
+            case MENSAL -> ChronoUnit.MONTHS.between(inicio, from) / step;
+        };
+        // the estimate never overshoots; at most a step or two to catch up
+        k = Math.max(0, k - 1);
+        while (ocorrencia(inicio, k).isBefore(from)) k++;
+        return k;
+    }
+}
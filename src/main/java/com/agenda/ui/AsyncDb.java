@@ -0,0 +1,80 @@
+package com.agenda.ui;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Executa chamadas aos DAOs fora da JavaFX Application Thread.
+ * <p>
+ * O trabalho roda em threads virtuais (o limite real de concorrência é o pool de conexões do
+ * {@link com.agenda.dao.Database}); os resultados voltam para a thread de UI via {@link Platform#runLater}.
+ */
+public final class AsyncDb {
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agenda-db-", 0).factory());
+
+    /** Executor que entrega tarefas na JavaFX Application Thread. */
+    public static final Executor FX = Platform::runLater;
+
+    private AsyncDb() {}
+
+    /**
+     * Executa {@code work} no executor de banco.
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, EXECUTOR);
+    }
+
+    /**
+     * Executa {@code work} no executor de banco e entrega o resultado a {@code onFx} na thread de UI.
+     * Erros inesperados são registrados e mostrados em um alerta.
+     */
+    public static <T> CompletableFuture<Void> supply(Supplier<T> work, Consumer<? super T> onFx) {
+        return supply(work).thenAcceptAsync(onFx, FX).exceptionally(AsyncDb::report);
+    }
+
+    /**
+     * Executa {@code work} no executor de banco e depois {@code onFx} na thread de UI.
+     */
+    public static CompletableFuture<Void> run(Runnable work, Runnable onFx) {
+        return CompletableFuture.runAsync(work, EXECUTOR).thenRunAsync(onFx, FX).exceptionally(AsyncDb::report);
+    }
+
+    /**
+     * Executa um {@link javafx.concurrent.Task} (ou outro Runnable) no executor de banco.
+     */
+    public static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    static Void report(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof CancellationException) return null;
+        cause.printStackTrace();
+        Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, "Erro ao acessar o banco: " + cause.getMessage()).showAndWait());
+        return null;
+    }
+
+    /**
+     * Não aceita novas tarefas e espera (por pouco tempo) as que já estão rodando, para que saves em
+     * andamento cheguem ao banco antes de {@link com.agenda.dao.Database#shutdown()}.
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+        try {
+            EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.agenda.ui;
+
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Texto exibido para cada compromisso na lista ("data - contato - local"), montado uma vez e reutilizado
+ * enquanto data, local, online e nome do contato continuarem os mesmos. As entradas somem junto com os
+ * compromissos (chaves fracas), por isso funciona também com a lista paginada.
+ */
+class CompromissoCellText {
+    private static final DateTimeFormatter DISPLAY_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Map<Compromisso, Entry> cache = new WeakHashMap<>();
+
+    String text(Compromisso item, Contato contato) {
+        String nome = contato == null ? null : contato.getNome();
+        Entry e = cache.get(item);
+        if (e != null && e.matches(item, nome)) return e.text;
+        if (e == null) {
+            e = new Entry();
+            cache.put(item, e);
+        }
+        e.dateTime = item.getDateTime();
+        e.local = item.getLocal();
+        e.online = item.isOnline();
+        e.nome = nome;
+        e.text = build(item, nome);
+        return e.text;
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    static String build(Compromisso item, String nome) {
+        LocalDateTime dt = item.getDateTime();
+        String dtText = dt == null ? "<sem data>" : dt.format(DISPLAY_FMT);
+        String local = item.getLocal();
+        StringBuilder sb = new StringBuilder();
+        sb.append(dtText).append(" - ").append(nome == null ? "<sem contato>" : nome);
+        if (item.isOnline()) sb.append(" (online)");
+        else if (local != null && !local.isEmpty()) sb.append(" - ").append(local);
+        else sb.append(" - (sem local)");
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        LocalDateTime dateTime;
+        String local;
+        boolean online;
+        String nome;
+        String text;
+
+        // reference checks: setters replace the instances, so an unchanged reference means unchanged text
+        boolean matches(Compromisso item, String currentNome) {
+            return dateTime == item.getDateTime() && local == item.getLocal()
+                    && online == item.isOnline() && nome == currentNome;
+        }
+    }
+}
@@ -1,21 +1,22 @@
 package com.agenda.ui;
 
+import com.agenda.dao.ChangeBus;
 import com.agenda.dao.CompromissoDAO;
 import com.agenda.dao.ContatoDAO;
 import com.agenda.model.Compromisso;
 import com.agenda.model.Contato;
+import com.agenda.model.Recorrencia;
+import com.agenda.util.CsvImporter;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.IOException;
@@ -24,8 +25,10 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
-public class CompromissoController {
+public class CompromissoController implements ScreenCache.Refreshable {
     @FXML
     private ComboBox<Contato> filterContatoCombo;
     @FXML
@@ -33,6 +36,10 @@ public class CompromissoController {
     @FXML
     private DatePicker endDatePicker;
     @FXML
+    private CheckBox sortDescCheck;
+    @FXML
+    private TextField searchField;
+    @FXML
     private ListView<Compromisso> compListView;
     @FXML
     private ComboBox<Contato> contatoCombo;
@@ -47,28 +54,55 @@ public class CompromissoController {
     @FXML
     private CheckBox onlineCheck;
     @FXML
+    private ComboBox<String> repetirCombo;
+    @FXML
+    private DatePicker repetirAtePicker;
+    @FXML
     private Button saveCompButton;
     @FXML
     private Button deleteCompButton;
 
     private final CompromissoDAO compDao = new CompromissoDAO();
     private final ContatoDAO contatoDao = new ContatoDAO();
-    private final ObservableList<Compromisso> compromissos = FXCollections.observableArrayList();
     private final ObservableList<Contato> contatos = FXCollections.observableArrayList();
-    private FilteredList<Compromisso> filtered;
+    // compromissos are fetched page by page as the list scrolls; at most MAX_PAGES stay in memory
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 20;
+    private final PagedCompromissoList compromissos = new PagedCompromissoList(compDao, PAGE_SIZE, MAX_PAGES);
+    private final ContatoIndex contatoIndex = new ContatoIndex(contatos);
+    private final CompromissoCellText cellText = new CompromissoCellText();
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+    // index 0 = no repetition, then Recorrencia.Frequencia in declaration order
+    private static final List<String> REPETIR = List.of("Não repete", "Diariamente", "Semanalmente", "Mensalmente");
+    // rule of the compromisso shown in the form (its exceptions survive a re-save)
+    private Recorrencia shownRecorrencia;
+    // typing in the search box re-queries once it pauses, not on every keystroke
+    private final Debouncer searchDebounce = new Debouncer(Duration.millis(250));
+    // compromisso changes from other screens that arrived while this scene was hidden
+    private boolean compromissosDirty;
 
     @FXML
     public void initialize() {
         // load data
         loadAll();
 
-        // setup filtered list
-        filtered = new FilteredList<>(compromissos, p -> true);
-        SortedList<Compromisso> sorted = new SortedList<>(filtered);
-        compListView.setItems(sorted);
+        // only the pages around the visible rows are kept in memory
+        compListView.setItems(compromissos);
+
+        // contato edits made elsewhere only touch the affected rows (and redraw the names)
+        new ContatoListSync(contatos, contatoIndex, contatoDao, this, this::loadContatos, c -> compListView.refresh());
+        ChangeBus.subscribe(change -> {
+            if (change.table == ChangeBus.Table.COMPROMISSOS && change.origin != this) {
+                AsyncDb.FX.execute(() -> onCompromissosChanged(change));
+            }
+        });
 
         contatoCombo.setItems(contatos);
         filterContatoCombo.setItems(contatos);
+        repetirCombo.getItems().setAll(REPETIR);
+        repetirCombo.getSelectionModel().selectedIndexProperty().addListener((obs, oldV, newV) ->
+                repetirAtePicker.setDisable(newV.intValue() <= 0));
+        repetirCombo.getSelectionModel().select(0);
 
         // cell factory to show date/time + contato name
         compListView.setCellFactory(lv -> new ListCell<>() {
@@ -78,17 +112,7 @@ public class CompromissoController {
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    Contato c = findContatoById(item.getContatoId());
-                    String nome = c == null ? "<sem contato>" : c.getNome();
-                    LocalDateTime dt = item.getDateTime();
-                    String dtText = dt == null ? "<sem data>" : dt.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-                    String local = item.getLocal();
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(dtText).append(" - ").append(nome);
-                    if (item.isOnline()) sb.append(" (online)");
-                    else if (local != null && !local.isEmpty()) sb.append(" - ").append(local);
-                    else sb.append(" - (sem local)");
-                    setText(sb.toString());
+                    setText(cellText.text(item, contatoIndex.get(item.getContatoId())));
                 }
             }
         });
@@ -97,6 +121,8 @@ public class CompromissoController {
         startDatePicker.valueProperty().addListener((obs, oldV, newV) -> updateFilter());
         endDatePicker.valueProperty().addListener((obs, oldV, newV) -> updateFilter());
         filterContatoCombo.valueProperty().addListener((obs, oldV, newV) -> updateFilter());
+        sortDescCheck.selectedProperty().addListener((obs, oldV, newV) -> updateFilter());
+        searchField.textProperty().addListener((obs, oldV, newV) -> searchDebounce.run(this::updateFilter));
 
         compListView.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
             if (newV != null) showCompromisso(newV);
@@ -104,33 +130,79 @@ public class CompromissoController {
         });
     }
 
+    // date range [start, end] (inclusive days), contato filter, search text and sort order are pushed down to SQL
     private void updateFilter() {
-        filtered.setPredicate(c -> {
-            // read values inside predicate to avoid capturing non-final locals
-            LocalDate start = startDatePicker.getValue();
-            LocalDate end = endDatePicker.getValue();
-            Contato selectedFilterContato = filterContatoCombo.getSelectionModel().getSelectedItem();
-
-            // if both dates provided and start > end, no results
-            if (start != null && end != null && start.isAfter(end)) return false;
-
-            // date filter
-            LocalDateTime dt = c.getDateTime();
-            if (start != null && (dt == null || dt.toLocalDate().isBefore(start))) return false;
-            if (end != null && (dt == null || dt.toLocalDate().isAfter(end))) return false;
-
-            // contato filter (if a specific contato selected, only allow matching contatoId)
-            if (selectedFilterContato != null) {
-                if (c.getContatoId() == null || !selectedFilterContato.getId().equals(c.getContatoId())) return false;
-            }
+        LocalDate start = startDatePicker.getValue();
+        LocalDate end = endDatePicker.getValue();
+        Contato selectedFilterContato = filterContatoCombo.getSelectionModel().getSelectedItem();
 
-            return true;
-        });
+        LocalDateTime from = start == null ? null : start.atStartOfDay();
+        LocalDateTime to = end == null ? null : end.plusDays(1).atStartOfDay();
+        // if both dates provided and start > end, no results (empty range)
+        if (start != null && end != null && start.isAfter(end)) to = from;
+        Integer contatoId = selectedFilterContato == null ? null : selectedFilterContato.getId();
+        searchDebounce.cancel();
+        compromissosDirty = false;
+        compromissos.setQuery(from, to, contatoId, searchField.getText(), sortDescCheck.isSelected());
     }
 
     private void loadAll() {
-        compromissos.setAll(compDao.findAll());
-        contatos.setAll(contatoDao.findAll());
+        loadContatos();
+        updateFilter();
+    }
+
+    private void loadContatos() {
+        AsyncDb.supply(contatoDao::findAll, list -> {
+            contatos.setAll(list);
+            // the cells show contato names, redraw them now that the names are known
+            compListView.refresh();
+        });
+    }
+
+    // an edit elsewhere only replaces its row when it is on a loaded page and kept its position;
+    // inserts and deletes shift positions, so the list is recounted
+    private void onCompromissosChanged(ChangeBus.Change change) {
+        Window window = compListView.getScene() == null ? null : compListView.getScene().getWindow();
+        if (window == null || !window.isShowing()) {
+            compromissosDirty = true;
+            return;
+        }
+        if (change.kind != ChangeBus.Kind.UPDATED) {
+            compromissos.refresh();
+            return;
+        }
+        int[] ids = change.ids();
+        AsyncDb.supply(() -> {
+            List<Compromisso> fresh = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Compromisso c = compDao.findById(id);
+                if (c != null) fresh.add(c);
+            }
+            return fresh;
+        }, fresh -> fresh.forEach(compromissos::applyUpdated));
+    }
+
+    @Override
+    public void onShown() {
+        if (compromissosDirty) {
+            compromissosDirty = false;
+            compromissos.refresh();
+        }
+    }
+
+    // recount the list and move the selection to c (it may have changed position or left the filter)
+    private void reloadAndSelect(Compromisso c) {
+        compromissos.refresh()
+                .thenComposeAsync(v -> compromissos.locate(c), AsyncDb.FX)
+                .thenAcceptAsync(index -> {
+                    if (index >= 0) {
+                        compListView.getSelectionModel().select(index);
+                        compListView.scrollTo(index);
+                    } else {
+                        clearForm();
+                    }
+                }, AsyncDb.FX)
+                .exceptionally(AsyncDb::report);
     }
 
     private void showCompromisso(Compromisso c) {
@@ -139,7 +211,7 @@ public class CompromissoController {
         LocalDateTime dt = c.getDateTime();
         if (dt != null) {
             datePicker.setValue(dt.toLocalDate());
-            timeField.setText(dt.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm")));
+            timeField.setText(dt.toLocalTime().format(TIME_FMT));
         } else {
             datePicker.setValue(null);
             timeField.clear();
@@ -148,12 +220,22 @@ public class CompromissoController {
         descricaoArea.setText(c.getDescricao() == null ? "" : c.getDescricao());
         onlineCheck.setSelected(c.isOnline());
         deleteCompButton.setDisable(false);
+        showRecorrencia(null);
+        Integer id = c.getId();
+        AsyncDb.supply(() -> compDao.findRecorrencia(id), r -> {
+            Compromisso current = compListView.getSelectionModel().getSelectedItem();
+            if (current != null && id.equals(current.getId())) showRecorrencia(r);
+        });
+    }
+
+    private void showRecorrencia(Recorrencia r) {
+        shownRecorrencia = r;
+        repetirCombo.getSelectionModel().select(r == null ? 0 : r.getFrequencia().ordinal() + 1);
+        repetirAtePicker.setValue(r == null || r.getAte() == null ? null : r.getAte().toLocalDate());
     }
 
     private Contato findContatoById(Integer id) {
-        if (id == null) return null;
-        for (Contato c : contatos) if (c.getId() != null && c.getId().equals(id)) return c;
-        return null;
+        return contatoIndex.get(id);
     }
 
     private void clearForm() {
@@ -163,6 +245,7 @@ public class CompromissoController {
         localField.clear();
         descricaoArea.clear();
         onlineCheck.setSelected(false);
+        showRecorrencia(null);
         deleteCompButton.setDisable(true);
     }
 
@@ -180,13 +263,47 @@ public class CompromissoController {
         chooser.setInitialFileName("compromissos.csv");
         File file = chooser.showSaveDialog(compListView.getScene().getWindow());
         if (file == null) return;
-        try {
-            com.agenda.util.CompromissoCsvExporter.export(compromissos, contatos, file);
-            new Alert(Alert.AlertType.INFORMATION, "Exportado com sucesso: " + file.getAbsolutePath()).showAndWait();
-        } catch (IOException e) {
-            e.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Erro ao exportar CSV: " + e.getMessage()).showAndWait();
+        // export the whole table straight from the database, not just the pages loaded on screen
+        ExportDialog.run(compListView.getScene().getWindow(), "Exportar compromissos", file,
+                progress -> com.agenda.util.CompromissoCsvExporter.exportParallel(compDao, file,
+                        Runtime.getRuntime().availableProcessors(), progress));
+    }
+
+    @FXML
+    void onImportCompCsv() {
+        Window window = compListView.getScene().getWindow();
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar compromissos de CSV");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(window);
+        if (file == null) return;
+
+        // contato_id is an id of the agenda the file came from: import its contatos in the same run,
+        // or confirm that they are the contatos of this database
+        ButtonType withContatos = new ButtonType("Escolher CSV de contatos...");
+        ButtonType existing = new ButtonType("Contatos já estão nesta agenda");
+        Alert ask = new Alert(Alert.AlertType.CONFIRMATION,
+                "Os compromissos apontam para contatos pelo id do arquivo. Importe junto o CSV de contatos "
+                        + "exportado da mesma agenda, ou confirme que o arquivo foi exportado desta agenda.",
+                withContatos, existing, ButtonType.CANCEL);
+        ask.initOwner(window);
+        ask.setHeaderText("De onde são os contatos?");
+        ButtonType choice = ask.showAndWait().orElse(ButtonType.CANCEL);
+        if (choice == ButtonType.CANCEL) return;
+
+        CsvImporter importer = new CsvImporter(contatoDao, compDao);
+        File rejects = CsvImporter.rejectsFileFor(file);
+        if (choice == existing) {
+            importer.setUseExistingContatoIds(true);
+            ExportDialog.runImport(window, "Importar compromissos", file,
+                    progress -> importer.importCompromissos(file, rejects, progress), rejects);
+            return;
         }
+        chooser.setTitle("CSV de contatos da mesma agenda");
+        File contatos = chooser.showOpenDialog(window);
+        if (contatos == null) return;
+        ExportDialog.runImport(window, "Importar contatos e compromissos", file,
+                progress -> importer.importAgenda(contatos, file, progress), CsvImporter.rejectsFileFor(contatos), rejects);
     }
 
     @FXML
@@ -208,7 +325,7 @@ public class CompromissoController {
             time = LocalTime.parse(timeText);
         } catch (DateTimeParseException ex) {
             try {
-                time = LocalTime.parse(timeText, DateTimeFormatter.ofPattern("HH:mm"));
+                time = LocalTime.parse(timeText, TIME_FMT);
             } catch (DateTimeParseException ex2) {
                 new Alert(Alert.AlertType.WARNING, "Hora inválida. Use HH:mm").showAndWait();
                 return;
@@ -226,26 +343,52 @@ public class CompromissoController {
             return;
         }
 
+        int repetir = repetirCombo.getSelectionModel().getSelectedIndex();
+        LocalDate ate = repetirAtePicker.getValue();
+        if (repetir > 0 && ate != null && ate.isBefore(date)) {
+            new Alert(Alert.AlertType.WARNING, "A data final da repetição é anterior ao compromisso").showAndWait();
+            return;
+        }
+        Recorrencia rule = null;
+        if (repetir > 0) {
+            rule = new Recorrencia(Recorrencia.Frequencia.values()[repetir - 1], 1, null,
+                    ate == null ? null : ate.atTime(LocalTime.MAX).withNano(0));
+            if (shownRecorrencia != null) rule.getExcecoes().addAll(shownRecorrencia.getExcecoes());
+        }
+
         Compromisso selected = compListView.getSelectionModel().getSelectedItem();
+        Compromisso values = new Compromisso(selected == null ? null : selected.getId(), contato.getId(), dateTime, local, online, descricao);
+        Recorrencia recorrencia = rule;
+        // the stored rule only changes when there is one to write or one to remove
+        boolean writeRule = rule != null || (selected != null && shownRecorrencia != null);
+        saveCompButton.setDisable(true);
+        // same contato (or same place) already booked at that time: ask before saving
+        AsyncDb.supply(() -> compDao.findConflicts(values), conflicts -> {
+            if (ConflictAlert.confirm(conflicts, contatoIndex)) saveComp(selected, values, writeRule, recorrencia);
+            else saveCompButton.setDisable(false);
+        });
+    }
+
+    private void saveComp(Compromisso selected, Compromisso values, boolean writeRule, Recorrencia rule) {
         if (selected == null) {
-            Compromisso c = new Compromisso(contato.getId(), dateTime, local, online, descricao);
-            if (compDao.insert(c)) {
-                compromissos.add(c);
-                compListView.getSelectionModel().select(c);
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao inserir compromisso").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> compDao.insert(values, rule)), ok -> {
+                saveCompButton.setDisable(false);
+                if (ok) reloadAndSelect(values);
+                else new Alert(Alert.AlertType.ERROR, "Erro ao inserir compromisso").showAndWait();
+            });
         } else {
-            selected.setContatoId(contato.getId());
-            selected.setDateTime(dateTime);
-            selected.setLocal(local);
-            selected.setOnline(online);
-            selected.setDescricao(descricao);
-            if (compDao.update(selected)) {
-                compListView.refresh();
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao atualizar compromisso").showAndWait();
-            }
+            selected.setContatoId(values.getContatoId());
+            selected.setDateTime(values.getDateTime());
+            selected.setLocal(values.getLocal());
+            selected.setOnline(values.isOnline());
+            selected.setDescricao(values.getDescricao());
+            // row and rule in one transaction, so a failure cannot leave one without the other
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> writeRule ? compDao.update(selected, rule) : compDao.update(selected)), ok -> {
+                saveCompButton.setDisable(false);
+                // the date may have moved it to another position (or out of the filter)
+                if (ok) reloadAndSelect(selected);
+                else new Alert(Alert.AlertType.ERROR, "Erro ao atualizar compromisso").showAndWait();
+            });
         }
     }
 
@@ -256,12 +399,14 @@ public class CompromissoController {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION, "Confirma exclusão do compromisso em " + selected + "?", ButtonType.YES, ButtonType.NO);
         a.showAndWait().ifPresent(bt -> {
             if (bt == ButtonType.YES) {
-                if (compDao.delete(selected.getId())) {
-                    compromissos.remove(selected);
-                    clearForm();
-                } else {
-                    new Alert(Alert.AlertType.ERROR, "Erro ao excluir compromisso").showAndWait();
-                }
+                AsyncDb.supply(() -> ChangeBus.as(this, () -> compDao.delete(selected.getId())), ok -> {
+                    if (ok) {
+                        compromissos.refresh();
+                        clearForm();
+                    } else {
+                        new Alert(Alert.AlertType.ERROR, "Erro ao excluir compromisso").showAndWait();
+                    }
+                });
             }
         });
     }
@@ -269,10 +414,7 @@ public class CompromissoController {
     @FXML
     void onBackToMenu(ActionEvent event) throws IOException {
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/menu.fxml"));
-        Scene scene = new Scene(loader.load(), 700, 450);
-        stage.setTitle("Agenda - Menu");
-        stage.setScene(scene);
+        ScreenCache.showMenu(stage);
     }
 
     @FXML
@@ -280,7 +422,8 @@ public class CompromissoController {
         if (startDatePicker != null) startDatePicker.setValue(null);
         if (endDatePicker != null) endDatePicker.setValue(null);
         if (filterContatoCombo != null) filterContatoCombo.getSelectionModel().clearSelection();
-        if (filtered != null) filtered.setPredicate(p -> true);
+        if (searchField != null) searchField.clear();
+        updateFilter();
     }
 
 }
@@ -0,0 +1,36 @@
+package com.agenda.ui;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+
+import java.util.List;
+
+/**
+ * Aviso de choque de horário antes de salvar um compromisso (ver {@link CompromissoDAO#findConflicts}).
+ */
+final class ConflictAlert {
+    private static final int MAX_LINES = 5;
+
+    private ConflictAlert() {
+    }
+
+    /** true se não há conflitos ou se o usuário decidiu salvar mesmo assim. */
+    static boolean confirm(List<Compromisso> conflicts, ContatoIndex contatos) {
+        if (conflicts.isEmpty()) return true;
+        StringBuilder sb = new StringBuilder("Conflito de horário (duração considerada: ")
+                .append(CompromissoDAO.DURACAO.toMinutes()).append(" min) com:\n");
+        for (int i = 0; i < conflicts.size() && i < MAX_LINES; i++) {
+            Compromisso c = conflicts.get(i);
+            Contato contato = contatos.get(c.getContatoId());
+            sb.append("\n  ").append(CompromissoCellText.build(c, contato == null ? null : contato.getNome()));
+        }
+        if (conflicts.size() > MAX_LINES) sb.append("\n  ... e mais ").append(conflicts.size() - MAX_LINES);
+        sb.append("\n\nSalvar mesmo assim?");
+        Alert a = new Alert(Alert.AlertType.WARNING, sb.toString(), ButtonType.YES, ButtonType.NO);
+        a.setHeaderText("Horário já ocupado");
+        return a.showAndWait().filter(bt -> bt == ButtonType.YES).isPresent();
+    }
+}
@@ -1,33 +1,41 @@
 package com.agenda.ui;
 
+import com.agenda.dao.ChangeBus;
+import com.agenda.dao.CompromissoDAO;
 import com.agenda.dao.ContatoDAO;
+import com.agenda.dao.FullTextQuery;
 import com.agenda.model.Contato;
 import com.agenda.util.CsvExporter;
+import com.agenda.util.CsvImporter;
+import com.agenda.validation.DuplicateContatoIndex;
 import com.agenda.validation.EmailValidator;
 import com.agenda.validation.PhoneValidator;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.control.*;
-import javafx.scene.Scene;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class ContactsController {
     @FXML
     private ComboBox<Contato> filterContactCombo;
     @FXML
+    private TextField searchField;
+    @FXML
     private ListView<Contato> listView;
     @FXML
     private TextField nomeField;
@@ -42,26 +50,40 @@ public class ContactsController {
 
     private final ContatoDAO dao = new ContatoDAO();
     private final ObservableList<Contato> contatos = FXCollections.observableArrayList();
-    private FilteredList<Contato> filtered;
+    private final ContatoIndex index = new ContatoIndex(contatos);
+    // normalized email/phone/name keys of every contato, kept in sync with the list
+    private final DuplicateContatoIndex duplicates = new DuplicateContatoIndex();
+    // combo + search filter, evaluated off the FX thread and swapped into the list in one step
+    private final FilterEngine<Contato> filter = new FilterEngine<>(contatos);
+    // full-text search results (id -> rank); null when the search box is empty
+    private Map<Integer, Integer> searchRanks;
+    private final LatestRequest<List<Contato>> searchRequest = new LatestRequest<>();
+    private final Debouncer searchDebounce = new Debouncer(Duration.millis(200));
+    private static final int SEARCH_LIMIT = 500;
 
     @FXML
     public void initialize() {
+        contatos.addListener((ListChangeListener<Contato>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) continue;
+                for (Contato c : change.getRemoved()) duplicates.remove(c.getId());
+                for (Contato c : change.getAddedSubList()) duplicates.put(c);
+            }
+        });
         listView.setItems(contatos);
         loadAll();
+        // changes made on other screens arrive as deltas (this screen's own writes are skipped)
+        new ContatoListSync(contatos, index, dao, this, this::loadAll, c -> {
+            if (c == listView.getSelectionModel().getSelectedItem()) showContato(c);
+        });
 
         filterContactCombo.setItems(contatos);
 
-        // setup filtered list
-        filtered = new FilteredList<>(contatos, p -> true);
-        SortedList<Contato> sorted = new SortedList<>(filtered);
-        listView.setItems(sorted);
+        listView.setItems(filter.result());
 
-        filterContactCombo.valueProperty().addListener((obs, oldV, newV) -> {
-            filtered.setPredicate(c -> {
-                if (newV == null) return true;
-                return c.getId() != null && c.getId().equals(newV.getId());
-            });
-        });
+        filterContactCombo.valueProperty().addListener((obs, oldV, newV) -> applyFilter());
+        // one FTS query once typing pauses, not one per keystroke
+        searchField.textProperty().addListener((obs, oldV, newV) -> searchDebounce.run(() -> search(newV)));
 
         listView.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
             if (newV != null) showContato(newV);
@@ -69,8 +91,59 @@ public class ContactsController {
         });
     }
 
+    // the FTS index ranks the matches; the list keeps only those, most relevant first
+    private void search(String text) {
+        if (FullTextQuery.isBlank(text)) {
+            searchRequest.cancel();
+            searchRanks = null;
+            applyFilter();
+            return;
+        }
+        searchRequest.submit(() -> dao.search(text, SEARCH_LIMIT), found -> {
+            Map<Integer, Integer> ranks = new HashMap<>();
+            for (Contato c : found) ranks.put(c.getId(), ranks.size());
+            searchRanks = ranks;
+            applyFilter();
+        });
+    }
+
+    private void applyFilter() {
+        Contato only = filterContactCombo.getValue();
+        Integer onlyId = only == null ? null : only.getId();
+        filter.setFilter(onlyId == null && searchRanks == null ? null : new ContatoFilter(onlyId, searchRanks));
+    }
+
+    /** Contato escolhido no combo e/ou resultado da busca (ordenado pela relevância). */
+    private static final class ContatoFilter implements FilterEngine.Filter<Contato> {
+        private final Integer onlyId;
+        private final Map<Integer, Integer> ranks;
+
+        ContatoFilter(Integer onlyId, Map<Integer, Integer> ranks) {
+            this.onlyId = onlyId;
+            this.ranks = ranks;
+        }
+
+        @Override
+        public boolean test(Contato c) {
+            if (onlyId != null && !onlyId.equals(c.getId())) return false;
+            return ranks == null || ranks.containsKey(c.getId());
+        }
+
+        @Override
+        public boolean narrows(FilterEngine.Filter<Contato> previous) {
+            if (!(previous instanceof ContatoFilter p)) return false;
+            if (p.onlyId != null && !p.onlyId.equals(onlyId)) return false;
+            return p.ranks == null || (ranks != null && p.ranks.keySet().containsAll(ranks.keySet()));
+        }
+
+        @Override
+        public Comparator<Contato> order() {
+            return ranks == null ? null : Comparator.comparingInt(c -> ranks.get(c.getId()));
+        }
+    }
+
     private void loadAll() {
-        contatos.setAll(dao.findAll());
+        AsyncDb.supply(dao::findAll, contatos::setAll);
     }
 
     private void showContato(Contato c) {
@@ -116,51 +189,38 @@ public class ContactsController {
             return;
         }
 
+        saveButton.setDisable(true);
         if (selected == null) {
             Contato c = new Contato(nome, email, telefone);
-            if (dao.insert(c)) {
-                contatos.add(c);
-                listView.getSelectionModel().select(c);
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao inserir contato").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.insert(c)), ok -> {
+                saveButton.setDisable(false);
+                if (ok) {
+                    contatos.add(c);
+                    listView.getSelectionModel().select(c);
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao inserir contato").showAndWait();
+                }
+            });
         } else {
             selected.setNome(nome);
             selected.setEmail(email);
             selected.setTelefone(telefone);
-            if (dao.update(selected)) {
-                // refresh list
-                listView.refresh();
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao atualizar contato").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.update(selected)), ok -> {
+                saveButton.setDisable(false);
+                if (ok) {
+                    // re-index the edited keys and refresh list
+                    duplicates.put(selected);
+                    listView.refresh();
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao atualizar contato").showAndWait();
+                }
+            });
         }
     }
 
-    // Helper: normaliza telefone para apenas dígitos (útil para comparação)
-    private String normalizePhone(String phone) {
-        if (phone == null) return "";
-        return phone.replaceAll("\\D+", "").trim();
-    }
-
     // Retorna true se encontrar um contato duplicado (exclui o contato atualmente selecionado quando atualizando)
     private boolean isDuplicate(Contato selected, String nome, String email, String telefone) {
-        String emailNorm = (email == null) ? "" : email.trim().toLowerCase();
-        String phoneNorm = normalizePhone(telefone);
-        String nameNorm = (nome == null) ? "" : nome.trim().toLowerCase();
-
-        for (Contato c : contatos) {
-            // skip same record when updating
-            if (selected != null && c.getId() != null && selected.getId() != null && c.getId().equals(selected.getId())) continue;
-
-            // same email (when provided)
-            if (!emailNorm.isEmpty() && c.getEmail() != null && emailNorm.equals(c.getEmail().trim().toLowerCase())) return true;
-            // same telefone (when provided) - compare only digits
-            if (!phoneNorm.isEmpty() && c.getTelefone() != null && phoneNorm.equals(normalizePhone(c.getTelefone()))) return true;
-            // if both email and phone empty, fallback to same name
-            if (emailNorm.isEmpty() && phoneNorm.isEmpty() && !nameNorm.isEmpty() && c.getNome() != null && nameNorm.equals(c.getNome().trim().toLowerCase())) return true;
-        }
-        return false;
+        return duplicates.isDuplicate(selected == null ? null : selected.getId(), nome, email, telefone);
     }
 
     @FXML
@@ -173,15 +233,24 @@ public class ContactsController {
         File file = chooser.showSaveDialog(window);
         if (file == null) return;
 
-        try {
-            // ensure latest data
-            List<Contato> all = dao.findAll();
-            CsvExporter.export(all, file);
-            new Alert(Alert.AlertType.INFORMATION, "Exportado com sucesso: " + file.getAbsolutePath()).showAndWait();
-        } catch (IOException e) {
-            e.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Erro ao exportar CSV: " + e.getMessage()).showAndWait();
-        }
+        // stream straight from the database (latest data, constant memory)
+        ExportDialog.run(window, "Exportar contatos", file, progress -> CsvExporter.export(dao, file, progress));
+    }
+
+    @FXML
+    void onImportCsv() {
+        Window window = listView.getScene().getWindow();
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar contatos de CSV");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(window);
+        if (file == null) return;
+
+        File rejects = CsvImporter.rejectsFileFor(file);
+        CsvImporter importer = new CsvImporter(dao, new CompromissoDAO());
+        // the imported rows reach every open screen through the ChangeBus
+        ExportDialog.runImport(window, "Importar contatos", file,
+                progress -> importer.importContatos(file, rejects, progress), rejects);
     }
 
     @FXML
@@ -197,12 +266,14 @@ public class ContactsController {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION, "Confirma exclusão de " + selected.getNome() + "?", ButtonType.YES, ButtonType.NO);
         a.showAndWait().ifPresent(bt -> {
             if (bt == ButtonType.YES) {
-                if (dao.delete(selected.getId())) {
-                    contatos.remove(selected);
-                    clearForm();
-                } else {
-                    new Alert(Alert.AlertType.ERROR, "Erro ao excluir").showAndWait();
-                }
+                AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.delete(selected.getId())), ok -> {
+                    if (ok) {
+                        contatos.remove(selected);
+                        clearForm();
+                    } else {
+                        new Alert(Alert.AlertType.ERROR, "Erro ao excluir").showAndWait();
+                    }
+                });
             }
         });
     }
@@ -210,15 +281,16 @@ public class ContactsController {
     @FXML
     void onBackToMenu(ActionEvent event) throws IOException {
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/menu.fxml"));
-        Scene scene = new Scene(loader.load(), 700, 450);
-        stage.setTitle("Agenda - Menu");
-        stage.setScene(scene);
+        ScreenCache.showMenu(stage);
     }
 
     @FXML
     void onClearFilter() {
         if (filterContactCombo != null) filterContactCombo.getSelectionModel().clearSelection();
-        if (filtered != null) filtered.setPredicate(p -> true);
+        if (searchField != null) searchField.clear();
+        searchDebounce.cancel();
+        searchRequest.cancel();
+        searchRanks = null;
+        applyFilter();
     }
 }
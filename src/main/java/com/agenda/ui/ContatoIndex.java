@@ -0,0 +1,38 @@
+package com.agenda.ui;
+
+import com.agenda.model.Contato;
+import com.agenda.util.IntObjectMap;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Índice id -> Contato mantido em sincronia com uma ObservableList, para buscas O(1)
+ * (ex.: nome do contato em cada célula da lista de compromissos).
+ */
+class ContatoIndex {
+    private final IntObjectMap<Contato> byId = new IntObjectMap<>();
+
+    ContatoIndex(ObservableList<Contato> source) {
+        for (Contato c : source) add(c);
+        source.addListener((ListChangeListener<Contato>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) continue;
+                for (Contato c : change.getRemoved()) remove(c);
+                for (Contato c : change.getAddedSubList()) add(c);
+            }
+        });
+    }
+
+    Contato get(Integer id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    private void add(Contato c) {
+        if (c != null && c.getId() != null) byId.put(c.getId(), c);
+    }
+
+    private void remove(Contato c) {
+        // setAll removes and adds in the same change; only drop the entry if it still points at c
+        if (c != null && c.getId() != null && byId.get(c.getId()) == c) byId.remove(c.getId());
+    }
+}
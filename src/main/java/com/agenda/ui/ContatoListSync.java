@@ -0,0 +1,79 @@
+package com.agenda.ui;
+
+import com.agenda.dao.ChangeBus;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.model.Contato;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Mantém uma lista de contatos de uma tela em dia com as alterações publicadas no {@link ChangeBus}
+ * por outras telas, aplicando só a diferença: o contato inserido é adicionado, o excluído é removido e
+ * o alterado é atualizado no próprio objeto e reposto na mesma posição (um único {@code set}), de modo
+ * que FilteredList/SortedList reavaliam apenas essa linha. Um RESET recarrega a lista inteira.
+ * Alterações feitas com {@code ChangeBus.as(origin, ...)} pela própria tela são ignoradas.
+ */
+class ContatoListSync {
+    private final ObservableList<Contato> list;
+    private final ContatoIndex index;
+    private final ContatoDAO dao;
+    private final Runnable reload;
+    private final Consumer<Contato> onChanged;
+
+    ContatoListSync(ObservableList<Contato> list, ContatoIndex index, ContatoDAO dao, Object origin,
+                    Runnable reload, Consumer<Contato> onChanged) {
+        this.list = list;
+        this.index = index;
+        this.dao = dao;
+        this.reload = reload;
+        this.onChanged = onChanged;
+        ChangeBus.subscribe(change -> {
+            if (change.table != ChangeBus.Table.CONTATOS || change.origin == origin) return;
+            AsyncDb.FX.execute(() -> apply(change));
+        });
+    }
+
+    private void apply(ChangeBus.Change change) {
+        switch (change.kind) {
+            case RESET -> reload.run();
+            case DELETED -> {
+                for (int id : change.ids()) {
+                    Contato c = index.get(id);
+                    if (c != null) list.remove(c);
+                }
+            }
+            case INSERTED, UPDATED -> {
+                int[] ids = change.ids();
+                AsyncDb.supply(() -> {
+                    List<Contato> fresh = new ArrayList<>(ids.length);
+                    for (int id : ids) {
+                        Contato c = dao.findById(id);
+                        if (c != null) fresh.add(c);
+                    }
+                    return fresh;
+                }, fresh -> fresh.forEach(this::upsert));
+            }
+        }
+    }
+
+    private void upsert(Contato fresh) {
+        Contato current = index.get(fresh.getId());
+        if (current == null) {
+            list.add(fresh);
+            return;
+        }
+        if (Objects.equals(current.getNome(), fresh.getNome())
+                && Objects.equals(current.getEmail(), fresh.getEmail())
+                && Objects.equals(current.getTelefone(), fresh.getTelefone())) return;
+        current.setNome(fresh.getNome());
+        current.setEmail(fresh.getEmail());
+        current.setTelefone(fresh.getTelefone());
+        int i = list.indexOf(current);
+        if (i >= 0) list.set(i, current);
+        onChanged.accept(current);
+    }
+}
@@ -0,0 +1,26 @@
+package com.agenda.ui;
+
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+/**
+ * Adia uma ação até que a entrada fique parada por {@code delay} (ex.: digitação em um campo de busca):
+ * cada {@link #run} reinicia a espera e só a última ação chega a executar.
+ * Usa a JavaFX Application Thread, tanto para chamar quanto para executar.
+ */
+class Debouncer {
+    private final PauseTransition pause;
+
+    Debouncer(Duration delay) {
+        this.pause = new PauseTransition(delay);
+    }
+
+    void run(Runnable action) {
+        pause.setOnFinished(e -> action.run());
+        pause.playFromStart();
+    }
+
+    void cancel() {
+        pause.stop();
+    }
+}
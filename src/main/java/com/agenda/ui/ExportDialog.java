@@ -0,0 +1,121 @@
+package com.agenda.ui;
+
+import com.agenda.util.CsvImporter;
+import com.agenda.util.ExportProgress;
+import javafx.concurrent.Task;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.Window;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Roda uma exportação (ou importação) em segundo plano mostrando uma janela com barra de progresso e botão Cancelar.
+ */
+class ExportDialog {
+    interface Job {
+        /** Executa a exportação; devolve false se ela foi cancelada. */
+        boolean run(ExportProgress progress) throws IOException;
+    }
+
+    interface ImportJob {
+        /** Executa a importação do arquivo. */
+        CsvImporter.Result run(ExportProgress progress) throws IOException;
+    }
+
+    static void run(Window owner, String title, File file, Job job) {
+        show(owner, title, "Exportando para " + file.getName(), job::run, completed -> {
+            if (Boolean.TRUE.equals(completed)) {
+                new Alert(Alert.AlertType.INFORMATION, "Exportado com sucesso: " + file.getAbsolutePath()).showAndWait();
+            } else {
+                new Alert(Alert.AlertType.INFORMATION, "Exportação cancelada").showAndWait();
+            }
+        }, "Erro ao exportar CSV: ");
+    }
+
+    /**
+     * Roda uma importação com a mesma janela de progresso. As telas abertas recebem as linhas gravadas
+     * pelo ChangeBus, inclusive se a importação for cancelada ou falhar no meio.
+     */
+    static void runImport(Window owner, String title, File file, ImportJob job, File... rejects) {
+        show(owner, title, "Importando " + file.getName(), job::run, result -> {
+            String msg = result.erro != null ? "Importação interrompida por um erro: " + result.erro + "\n"
+                    : result.cancelled ? "Importação cancelada. " : "Importação concluída. ";
+            msg += result.imported + " linha(s) gravada(s), " + result.rejected + " rejeitada(s).";
+            for (File r : rejects) {
+                if (result.rejected > 0 && r.exists()) msg += "\nRejeitadas: " + r.getAbsolutePath();
+            }
+            new Alert(result.erro != null ? Alert.AlertType.ERROR : Alert.AlertType.INFORMATION, msg).showAndWait();
+        }, "Erro ao importar CSV: ");
+    }
+
+    private interface Work<T> {
+        T run(ExportProgress progress) throws IOException;
+    }
+
+    private static <T> void show(Window owner, String title, String header, Work<T> job, Consumer<T> onSucceeded, String errorPrefix) {
+        // o cancelamento é só um aviso lido pelo job entre linhas: ele termina normalmente (arquivo parcial
+        // apagado, importação com os lotes já gravados) e o resultado passa por onSucceeded
+        AtomicBoolean cancelRequested = new AtomicBoolean();
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                Task<T> self = this;
+                return job.run(new ExportProgress() {
+                    @Override
+                    public void update(long rows, long total) {
+                        updateProgress(rows, total > 0 ? total : -1);
+                        updateMessage(total > 0 ? rows + " de " + total + " linhas" : rows + " linhas");
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return cancelRequested.get() || self.isCancelled();
+                    }
+                });
+            }
+        };
+
+        ProgressBar bar = new ProgressBar();
+        bar.setPrefWidth(320);
+        bar.progressProperty().bind(task.progressProperty());
+        Label status = new Label();
+        status.textProperty().bind(task.messageProperty());
+
+        Alert dialog = new Alert(Alert.AlertType.NONE);
+        dialog.initOwner(owner);
+        dialog.setTitle(title);
+        dialog.setHeaderText(header);
+        dialog.getDialogPane().setContent(new VBox(8, bar, status));
+        dialog.getButtonTypes().setAll(ButtonType.CANCEL);
+        // fechar a janela (Cancelar ou X) enquanto a tarefa roda pede o cancelamento, sem interromper
+        // a thread, que fecharia o FileChannel no meio de uma escrita
+        dialog.setOnHidden(e -> {
+            if (task.isRunning()) cancelRequested.set(true);
+        });
+
+        task.setOnSucceeded(e -> {
+            dialog.close();
+            onSucceeded.accept(task.getValue());
+        });
+        task.setOnCancelled(e -> {
+            dialog.close();
+            new Alert(Alert.AlertType.INFORMATION, "Operação cancelada").showAndWait();
+        });
+        task.setOnFailed(e -> {
+            dialog.close();
+            Throwable ex = task.getException();
+            if (ex != null) ex.printStackTrace();
+            new Alert(Alert.AlertType.ERROR, errorPrefix + (ex == null ? "" : ex.getMessage())).showAndWait();
+        });
+
+        dialog.show();
+        AsyncDb.execute(task);
+    }
+}
@@ -0,0 +1,222 @@
+package com.agenda.ui;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Filtra uma lista grande em memória fora da thread de UI e publica o resultado em {@link #result()}
+ * de uma só vez (um único setAll), em vez de reavaliar um predicado linha a linha na thread de UI.
+ * <p>
+ * Listas com mais de {@value #PARALLEL_THRESHOLD} itens são avaliadas com parallel streams. Se o novo
+ * filtro apenas restringe o anterior ({@link Filter#narrows}), só o resultado atual é percorrido.
+ * Enquanto uma avaliação roda, novos filtros substituem o pendente e apenas o último é aplicado.
+ * Alterações pequenas na lista de origem são aplicadas direto no resultado (as posições são
+ * calculadas fora da thread de UI, que só faz set/remove/add por índice); as grandes (ex.: recarga)
+ * disparam nova avaliação. Deve ser usada apenas na JavaFX Application Thread.
+ */
+class FilterEngine<T> {
+    interface Filter<T> extends Predicate<T> {
+        /** true se tudo o que este filtro aceita também é aceito por {@code previous}. */
+        boolean narrows(Filter<T> previous);
+
+        /** Ordem do resultado; null mantém a ordem da lista de origem. */
+        default Comparator<? super T> order() {
+            return null;
+        }
+    }
+
+    private static final int PARALLEL_THRESHOLD = 20_000;
+    // changes touching more rows than this re-run the filter instead of patching the result
+    private static final int INCREMENTAL_LIMIT = 100;
+
+    private final ObservableList<T> source;
+    private final ObservableList<T> result = FXCollections.observableArrayList();
+    // filtro que produziu o resultado atual (null = todos os itens)
+    private Filter<T> applied;
+    private Filter<T> requested;
+    private boolean running;
+    // the source changed or another filter arrived while evaluating
+    private boolean again;
+    // o resultado não reflete a origem atual; o próximo filtro parte da origem
+    private boolean stale;
+
+    FilterEngine(ObservableList<T> source) {
+        this.source = source;
+        result.setAll(source);
+        source.addListener((ListChangeListener<T>) this::onSourceChanged);
+    }
+
+    /** Lista filtrada, para o ListView. */
+    ObservableList<T> result() {
+        return result;
+    }
+
+    /** Troca o filtro (null mostra todos os itens, na ordem da origem). */
+    void setFilter(Filter<T> filter) {
+        requested = filter;
+        start();
+    }
+
+    private void start() {
+        if (running) {
+            again = true;
+            return;
+        }
+        Filter<T> filter = requested;
+        if (filter == null) {
+            applied = null;
+            stale = false;
+            result.setAll(source);
+            return;
+        }
+        boolean narrowing = !stale && applied != null && filter.narrows(applied);
+        List<T> base = new ArrayList<>(narrowing ? result : source);
+        running = true;
+        stale = false;
+        AsyncDb.supply(() -> evaluate(base, filter), list -> {
+            running = false;
+            if (again) {
+                // a newer filter or source change is waiting: this result is already outdated
+                again = false;
+                start();
+                return;
+            }
+            applied = filter;
+            result.setAll(list);
+        });
+    }
+
+    private static <T> List<T> evaluate(List<T> base, Filter<T> filter) {
+        Stream<T> s = base.size() > PARALLEL_THRESHOLD ? base.parallelStream() : base.stream();
+        s = s.filter(filter);
+        if (filter.order() != null) s = s.sorted(filter.order());
+        return s.collect(Collectors.toList());
+    }
+
+    private void onSourceChanged(ListChangeListener.Change<? extends T> change) {
+        if (running) {
+            again = true;
+            stale = true;
+            return;
+        }
+        List<T> removed = new ArrayList<>();
+        List<T> added = new ArrayList<>();
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) continue;
+            if (removed.size() + added.size() + change.getRemovedSize() + change.getAddedSize() > INCREMENTAL_LIMIT) {
+                stale = true;
+                start();
+                return;
+            }
+            if (applied == null) {
+                // unfiltered: the result mirrors the source position by position
+                int from = change.getFrom();
+                if (change.wasRemoved()) result.remove(from, from + change.getRemovedSize());
+                if (change.wasAdded()) result.addAll(from, change.getAddedSubList());
+                continue;
+            }
+            removed.addAll(change.getRemoved());
+            added.addAll(change.getAddedSubList());
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) patch(removed, added);
+    }
+
+    // the positions are looked up off the FX thread; on it only set/remove/add at known indices run
+    private void patch(List<T> removed, List<T> added) {
+        Filter<T> filter = applied;
+        List<T> base = new ArrayList<>(result);
+        running = true;
+        AsyncDb.supply(() -> Patch.of(base, removed, added, filter), p -> {
+            running = false;
+            if (again) {
+                // the patch no longer matches the source
+                again = false;
+                stale = true;
+                start();
+                return;
+            }
+            p.applyTo(result);
+        });
+    }
+
+    /**
+     * Edições que levam o resultado atual ao resultado com os itens adicionados/removidos re-testados:
+     * itens já presentes são trocados no lugar (ou saem, se o filtro não os aceita mais), os removidos
+     * saem e os novos entram na posição da ordem do filtro ou no fim.
+     */
+    static final class Patch<T> {
+        private final List<Integer> setAt = new ArrayList<>();
+        private final List<T> setItems = new ArrayList<>();
+        // decrescente, para que cada remoção não desloque as seguintes
+        private final List<Integer> removeAt = new ArrayList<>();
+        // crescente, já na posição final
+        private final List<Integer> addAt = new ArrayList<>();
+        private final List<T> addItems = new ArrayList<>();
+
+        static <T> Patch<T> of(List<T> base, List<? extends T> removed, List<? extends T> added, Filter<T> filter) {
+            Patch<T> p = new Patch<>();
+            Map<T, Integer> index = new HashMap<>(base.size() * 2);
+            for (int i = 0; i < base.size(); i++) index.putIfAbsent(base.get(i), i);
+
+            Set<T> readded = new HashSet<>(added);
+            TreeSet<Integer> drop = new TreeSet<>(Comparator.reverseOrder());
+            for (T r : removed) {
+                Integer i = index.get(r);
+                if (i != null && !readded.contains(r)) drop.add(i);
+            }
+            List<T> fresh = new ArrayList<>();
+            for (T a : added) {
+                Integer i = index.get(a);
+                if (!filter.test(a)) {
+                    if (i != null) drop.add(i);
+                } else if (i != null) {
+                    p.setAt.add(i);
+                    p.setItems.add(a);
+                } else {
+                    fresh.add(a);
+                }
+            }
+            p.removeAt.addAll(drop);
+            if (fresh.isEmpty()) return p;
+
+            // the result after the replacements and removals, to place the new items
+            List<T> kept = new ArrayList<>(base);
+            for (int k = 0; k < p.setAt.size(); k++) kept.set(p.setAt.get(k), p.setItems.get(k));
+            for (int i : drop) kept.remove(i);
+            Comparator<? super T> order = filter.order();
+            if (order != null) fresh.sort(order);
+            int previous = 0;
+            for (int k = 0; k < fresh.size(); k++) {
+                int pos = kept.size();
+                if (order != null) {
+                    pos = Collections.binarySearch(kept, fresh.get(k), order);
+                    pos = Math.max(previous, pos < 0 ? -pos - 1 : pos);
+                    previous = pos;
+                }
+                p.addAt.add(pos + k);
+                p.addItems.add(fresh.get(k));
+            }
+            return p;
+        }
+
+        void applyTo(List<T> list) {
+            for (int k = 0; k < setAt.size(); k++) list.set(setAt.get(k), setItems.get(k));
+            for (int i : removeAt) list.remove(i);
+            for (int k = 0; k < addAt.size(); k++) list.add(addAt.get(k), addItems.get(k));
+        }
+    }
+}
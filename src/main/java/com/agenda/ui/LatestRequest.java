@@ -0,0 +1,32 @@
+package com.agenda.ui;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Consulta assíncrona em que só a última requisição importa (ex.: trocar rapidamente o contato
+ * selecionado). Cada {@link #submit} cancela a anterior; uma consulta que ainda não começou nem chega
+ * a rodar, e resultados atrasados de consultas antigas são descartados.
+ * Deve ser usada a partir da JavaFX Application Thread.
+ */
+public class LatestRequest<T> {
+    private CompletableFuture<T> current;
+    private long sequence;
+
+    public void submit(Supplier<T> work, Consumer<? super T> onFx) {
+        cancel();
+        long mine = sequence;
+        CompletableFuture<T> f = AsyncDb.supply(work);
+        current = f;
+        f.thenAcceptAsync(result -> {
+            if (mine == sequence) onFx.accept(result);
+        }, AsyncDb.FX).exceptionally(AsyncDb::report);
+    }
+
+    public void cancel() {
+        sequence++;
+        if (current != null) current.cancel(false);
+        current = null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.agenda.ui;
 
+import com.agenda.dao.ChangeBus;
 import com.agenda.dao.CompromissoDAO;
 import com.agenda.dao.ContatoDAO;
 import com.agenda.model.Compromisso;
@@ -15,7 +16,6 @@ import javafx.stage.FileChooser;
 import javafx.stage.Window;
 
 import java.io.File;
-import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -57,6 +57,9 @@ public class MainController {
     private final CompromissoDAO compDao = new CompromissoDAO();
     private final ObservableList<Contato> contatos = FXCollections.observableArrayList();
     private final ObservableList<Compromisso> compromissos = FXCollections.observableArrayList();
+    private final ContatoIndex index = new ContatoIndex(contatos);
+    // fast selection changes only keep the last contato's query
+    private final LatestRequest<List<Compromisso>> compromissosRequest = new LatestRequest<>();
 
     private static final DateTimeFormatter DISPLAY_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     private static final DateTimeFormatter DB_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -65,6 +68,19 @@ public class MainController {
     public void initialize() {
         listView.setItems(contatos);
         loadAll();
+        new ContatoListSync(contatos, index, dao, this, this::loadAll, c -> {
+            if (c == listView.getSelectionModel().getSelectedItem()) showContato(c);
+            listView.refresh();
+        });
+        // compromissos changed elsewhere: only the selected contato's list is on screen
+        ChangeBus.subscribe(change -> {
+            if (change.table == ChangeBus.Table.COMPROMISSOS && change.origin != this) {
+                AsyncDb.FX.execute(() -> {
+                    Contato selected = listView.getSelectionModel().getSelectedItem();
+                    if (selected != null) loadCompromissosForContato(selected.getId());
+                });
+            }
+        });
 
         compListView.setItems(compromissos);
 
@@ -74,6 +90,7 @@ public class MainController {
                 loadCompromissosForContato(newV.getId());
             } else {
                 clearForm();
+                compromissosRequest.cancel();
                 compromissos.clear();
             }
         });
@@ -85,7 +102,7 @@ public class MainController {
     }
 
     private void loadAll() {
-        contatos.setAll(dao.findAll());
+        AsyncDb.supply(dao::findAll, contatos::setAll);
     }
 
     private void showContato(Contato c) {
@@ -124,24 +141,31 @@ public class MainController {
         }
 
         Contato selected = listView.getSelectionModel().getSelectedItem();
+        saveButton.setDisable(true);
         if (selected == null) {
             Contato c = new Contato(nome, email, telefone);
-            if (dao.insert(c)) {
-                contatos.add(c);
-                listView.getSelectionModel().select(c);
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao inserir contato").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.insert(c)), ok -> {
+                saveButton.setDisable(false);
+                if (ok) {
+                    contatos.add(c);
+                    listView.getSelectionModel().select(c);
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao inserir contato").showAndWait();
+                }
+            });
         } else {
             selected.setNome(nome);
             selected.setEmail(email);
             selected.setTelefone(telefone);
-            if (dao.update(selected)) {
-                // refresh list
-                listView.refresh();
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao atualizar contato").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.update(selected)), ok -> {
+                saveButton.setDisable(false);
+                if (ok) {
+                    // refresh list
+                    listView.refresh();
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao atualizar contato").showAndWait();
+                }
+            });
         }
     }
 
@@ -155,15 +179,8 @@ public class MainController {
         File file = chooser.showSaveDialog(window);
         if (file == null) return;
 
-        try {
-            // ensure latest data
-            List<Contato> all = dao.findAll();
-            CsvExporter.export(all, file);
-            new Alert(Alert.AlertType.INFORMATION, "Exportado com sucesso: " + file.getAbsolutePath()).showAndWait();
-        } catch (IOException e) {
-            e.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Erro ao exportar CSV: " + e.getMessage()).showAndWait();
-        }
+        // stream straight from the database (latest data, constant memory)
+        ExportDialog.run(window, "Exportar contatos", file, progress -> CsvExporter.export(dao, file, progress));
     }
 
     @FXML
@@ -179,12 +196,14 @@ public class MainController {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION, "Confirma exclusão de " + selected.getNome() + "?", ButtonType.YES, ButtonType.NO);
         a.showAndWait().ifPresent(bt -> {
             if (bt == ButtonType.YES) {
-                if (dao.delete(selected.getId())) {
-                    contatos.remove(selected);
-                    clearForm();
-                } else {
-                    new Alert(Alert.AlertType.ERROR, "Erro ao excluir").showAndWait();
-                }
+                AsyncDb.supply(() -> ChangeBus.as(this, () -> dao.delete(selected.getId())), ok -> {
+                    if (ok) {
+                        contatos.remove(selected);
+                        clearForm();
+                    } else {
+                        new Alert(Alert.AlertType.ERROR, "Erro ao excluir").showAndWait();
+                    }
+                });
             }
         });
     }
@@ -192,7 +211,8 @@ public class MainController {
     // ---------- compromissos logic ----------
     private void loadCompromissosForContato(Integer contatoId) {
         if (contatoId == null) return;
-        compromissos.setAll(compDao.findByContatoId(contatoId));
+        compromissos.clear();
+        compromissosRequest.submit(() -> compDao.findByContatoId(contatoId), compromissos::setAll);
     }
 
     private void showCompromisso(Compromisso c) {
@@ -251,24 +271,40 @@ public class MainController {
         boolean online = onlineCheck.isSelected();
 
         Compromisso selected = compListView.getSelectionModel().getSelectedItem();
+        Compromisso values = new Compromisso(selected == null ? null : selected.getId(), selectedContato.getId(), dateTime, local, online,
+                selected == null ? null : selected.getDescricao());
+        saveCompButton.setDisable(true);
+        // same contato (or same place) already booked at that time: ask before saving
+        AsyncDb.supply(() -> compDao.findConflicts(values), conflicts -> {
+            if (ConflictAlert.confirm(conflicts, index)) saveComp(selected, values);
+            else saveCompButton.setDisable(false);
+        });
+    }
+
+    private void saveComp(Compromisso selected, Compromisso values) {
         if (selected == null) {
-            Compromisso c = new Compromisso(selectedContato.getId(), dateTime, local, online);
-            if (compDao.insert(c)) {
-                compromissos.add(c);
-                compListView.getSelectionModel().select(c);
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao inserir compromisso").showAndWait();
-            }
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> compDao.insert(values)), ok -> {
+                saveCompButton.setDisable(false);
+                if (ok) {
+                    compromissos.add(values);
+                    compListView.getSelectionModel().select(values);
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao inserir compromisso").showAndWait();
+                }
+            });
         } else {
-            selected.setContatoId(selectedContato.getId());
-            selected.setDateTime(dateTime);
-            selected.setLocal(local);
-            selected.setOnline(online);
-            if (compDao.update(selected)) {
-                compListView.refresh();
-            } else {
-                new Alert(Alert.AlertType.ERROR, "Erro ao atualizar compromisso").showAndWait();
-            }
+            selected.setContatoId(values.getContatoId());
+            selected.setDateTime(values.getDateTime());
+            selected.setLocal(values.getLocal());
+            selected.setOnline(values.isOnline());
+            AsyncDb.supply(() -> ChangeBus.as(this, () -> compDao.update(selected)), ok -> {
+                saveCompButton.setDisable(false);
+                if (ok) {
+                    compListView.refresh();
+                } else {
+                    new Alert(Alert.AlertType.ERROR, "Erro ao atualizar compromisso").showAndWait();
+                }
+            });
         }
     }
 
@@ -279,12 +315,14 @@ public class MainController {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION, "Confirma exclusão do compromisso em " + selected + "?", ButtonType.YES, ButtonType.NO);
         a.showAndWait().ifPresent(bt -> {
             if (bt == ButtonType.YES) {
-                if (compDao.delete(selected.getId())) {
-                    compromissos.remove(selected);
-                    clearCompForm();
-                } else {
-                    new Alert(Alert.AlertType.ERROR, "Erro ao excluir compromisso").showAndWait();
-                }
+                AsyncDb.supply(() -> ChangeBus.as(this, () -> compDao.delete(selected.getId())), ok -> {
+                    if (ok) {
+                        compromissos.remove(selected);
+                        clearCompForm();
+                    } else {
+                        new Alert(Alert.AlertType.ERROR, "Erro ao excluir compromisso").showAndWait();
+                    }
+                });
             }
         });
     }
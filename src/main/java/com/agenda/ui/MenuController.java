@@ -2,9 +2,7 @@ package com.agenda.ui;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
@@ -13,19 +11,18 @@ public class MenuController {
     @FXML
     void onOpenContatos(ActionEvent event) throws IOException {
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/contacts.fxml"));
-        Scene scene = new Scene(loader.load(), 900, 500);
-        stage.setTitle("Agenda - Contatos");
-        stage.setScene(scene);
+        ScreenCache.show(stage, "/contacts.fxml", "Agenda - Contatos", 900, 500);
     }
 
     @FXML
     void onOpenCompromissos(ActionEvent event) throws IOException {
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        FXMLLoader loader = new FXMLLoader(getClass().getResource("/comps.fxml"));
-        Scene scene = new Scene(loader.load(), 900, 500);
-        stage.setTitle("Agenda - Compromissos");
-        stage.setScene(scene);
+        ScreenCache.show(stage, "/comps.fxml", "Agenda - Compromissos", 900, 500);
+    }
+
+    @FXML
+    void onOpenEstatisticas(ActionEvent event) {
+        StatsDialog.show(((Node) event.getSource()).getScene().getWindow());
     }
 }
 
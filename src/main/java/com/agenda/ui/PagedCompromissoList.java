@@ -0,0 +1,254 @@
+package com.agenda.ui;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.FullTextQuery;
+import com.agenda.model.Compromisso;
+import javafx.collections.ObservableListBase;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ObservableList somente-leitura que busca compromissos no banco em páginas de tamanho fixo,
+ * conforme o ListView pede os índices visíveis.
+ * <p>
+ * Mantém no máximo {@code maxPages} páginas em um LRU e pré-carrega as páginas vizinhas da última
+ * acessada. Nenhuma consulta roda na thread de UI: um índice de página ainda não carregada devolve
+ * {@code null} e, quando a página chega, a lista avisa os observadores para redesenhar essas linhas.
+ * Filtro (intervalo de datas, contato, texto) e ordenação são executados no SQL; para alterá-los use
+ * {@link #setQuery}. Deve ser usada apenas na JavaFX Application Thread.
+ */
+public class PagedCompromissoList extends ObservableListBase<Compromisso> {
+    // cursores guardados; sem o cursor, a página é buscada por OFFSET
+    private static final int MAX_PAGE_ENDS = 1024;
+
+    private final CompromissoDAO dao;
+    private final int pageSize;
+    private final int maxPages;
+
+    private final Map<Integer, List<Compromisso>> pages;
+    // cursor do último item de cada página já vista: permite buscar a seguinte por chave, sem OFFSET
+    private final Map<Integer, CompromissoDAO.Cursor> pageEnds = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CompromissoDAO.Cursor> eldest) {
+            return size() > MAX_PAGE_ENDS;
+        }
+    };
+    private final Set<Integer> pending = new HashSet<>();
+    // páginas pedidas pela UI antes de estarem carregadas (linhas exibidas vazias)
+    private final Set<Integer> placeholders = new HashSet<>();
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Integer contatoId;
+    private String text;
+    private boolean descending;
+    private int size;
+    // incrementado a cada nova consulta; descarta resultados de consultas antigas
+    private int generation;
+
+    public PagedCompromissoList(CompromissoDAO dao, int pageSize, int maxPages) {
+        this.dao = dao;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(3, maxPages);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Compromisso>> eldest) {
+                return size() > PagedCompromissoList.this.maxPages;
+            }
+        };
+    }
+
+    /**
+     * Troca o filtro/ordenação e recarrega a lista (from inclusivo, to exclusivo; nulos não limitam).
+     */
+    public CompletableFuture<Void> setQuery(LocalDateTime from, LocalDateTime to, Integer contatoId, boolean descending) {
+        return setQuery(from, to, contatoId, null, descending);
+    }
+
+    /**
+     * Como {@link #setQuery(LocalDateTime, LocalDateTime, Integer, boolean)}, mantendo só os compromissos
+     * cujo local ou descrição contém as palavras de {@code text} (busca do índice FTS, na ordem por data).
+     */
+    public CompletableFuture<Void> setQuery(LocalDateTime from, LocalDateTime to, Integer contatoId, String text, boolean descending) {
+        this.from = from;
+        this.to = to;
+        this.contatoId = contatoId;
+        this.text = text;
+        this.descending = descending;
+        return refresh();
+    }
+
+    /**
+     * Descarta as páginas carregadas e reconta o total, ex.: depois de inserir ou excluir.
+     * O futuro completa, na thread de UI, quando o novo tamanho já foi publicado.
+     */
+    public CompletableFuture<Void> refresh() {
+        final int gen = ++generation;
+        pages.clear();
+        pageEnds.clear();
+        pending.clear();
+        placeholders.clear();
+        final LocalDateTime qFrom = from;
+        final LocalDateTime qTo = to;
+        final Integer qContato = contatoId;
+        final String qText = text;
+        return AsyncDb.supply(() -> dao.count(qFrom, qTo, qContato, qText)).thenAcceptAsync(count -> {
+            if (gen != generation) return;
+            int oldSize = size;
+            size = count;
+            beginChange();
+            if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, (Compromisso) null));
+            if (size > 0) nextAdd(0, size);
+            endChange();
+        }, AsyncDb.FX);
+    }
+
+    /**
+     * Posição de um compromisso na consulta atual, calculada no banco (sem percorrer as páginas),
+     * ou -1 se ele não pertence ao filtro. O resultado é entregue na thread de UI.
+     */
+    public CompletableFuture<Integer> locate(Compromisso c) {
+        if (c == null || c.getId() == null || !matches(c)) return CompletableFuture.completedFuture(-1);
+        final LocalDateTime qFrom = from;
+        final LocalDateTime qTo = to;
+        final Integer qContato = contatoId;
+        final String qText = text;
+        final boolean qDesc = descending;
+        final CompromissoDAO.Cursor position = CompromissoDAO.Cursor.after(c);
+        return AsyncDb.supply(() -> dao.countBefore(qFrom, qTo, qContato, qText, qDesc, position))
+                .thenApplyAsync(i -> i, AsyncDb.FX);
+    }
+
+    /**
+     * Aplica a alteração de um compromisso feita em outro lugar. Se ele está em uma página carregada e
+     * continua na mesma posição (mesma data/hora, ainda dentro do filtro), só aquela linha é trocada;
+     * caso contrário a lista é recontada com {@link #refresh()}.
+     */
+    public void applyUpdated(Compromisso fresh) {
+        for (Map.Entry<Integer, List<Compromisso>> e : pages.entrySet()) {
+            List<Compromisso> rows = e.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                Compromisso old = rows.get(i);
+                if (!old.getId().equals(fresh.getId())) continue;
+                if (Objects.equals(old.getDateTime(), fresh.getDateTime()) && matches(fresh)) {
+                    rows.set(i, fresh);
+                    beginChange();
+                    nextSet(e.getKey() * pageSize + i, old);
+                    endChange();
+                } else {
+                    refresh();
+                }
+                return;
+            }
+        }
+        // not on a loaded page: its old position is unknown, recount
+        refresh();
+    }
+
+    private boolean matches(Compromisso c) {
+        LocalDateTime dt = c.getDateTime();
+        if (contatoId != null && !contatoId.equals(c.getContatoId())) return false;
+        if (from != null && (dt == null || dt.isBefore(from))) return false;
+        if (to != null && (dt == null || !dt.isBefore(to))) return false;
+        return FullTextQuery.matches(text, c.getLocal(), c.getDescricao());
+    }
+
+    @Override
+    public Compromisso get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        int page = index / pageSize;
+        List<Compromisso> rows = pages.get(page);
+        if (rows == null) {
+            placeholders.add(page);
+            request(page);
+            return null;
+        }
+        request(page - 1);
+        request(page + 1);
+        int offset = index % pageSize;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // only look at what is already loaded; a full scan would pull every page from disk
+    @Override
+    public int indexOf(Object o) {
+        for (Map.Entry<Integer, List<Compromisso>> e : pages.entrySet()) {
+            int i = e.getValue().indexOf(o);
+            if (i >= 0) return e.getKey() * pageSize + i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private void store(int page, List<Compromisso> rows) {
+        pages.put(page, rows);
+        if (!rows.isEmpty()) pageEnds.put(page, CompromissoDAO.Cursor.after(rows.get(rows.size() - 1)));
+        if (placeholders.remove(page)) {
+            // linhas que estavam vazias na tela agora têm conteúdo
+            int start = page * pageSize;
+            int end = Math.min(size, start + pageSize);
+            if (start < end) {
+                beginChange();
+                nextReplace(start, end, Collections.nCopies(end - start, (Compromisso) null));
+                endChange();
+            }
+        }
+    }
+
+    private void request(int page) {
+        if (page < 0 || page * pageSize >= size || pages.containsKey(page) || !pending.add(page)) return;
+        final int gen = generation;
+        final LocalDateTime qFrom = from;
+        final LocalDateTime qTo = to;
+        final Integer qContato = contatoId;
+        final String qText = text;
+        final boolean qDesc = descending;
+        final CompromissoDAO.Cursor after = page == 0 ? null : pageEnds.get(page - 1);
+        final int offset = page * pageSize;
+        final int expected = Math.min(pageSize, size - offset);
+        AsyncDb.supply(() -> (page == 0 || after != null)
+                ? dao.findPage(qFrom, qTo, qContato, qText, qDesc, after, pageSize)
+                : dao.findSlice(qFrom, qTo, qContato, qText, qDesc, offset, pageSize)).whenCompleteAsync((rows, error) -> {
+            if (gen != generation) return;
+            pending.remove(page);
+            if (error != null) {
+                // page stays unloaded; the next get() for it asks again
+                error.printStackTrace();
+                return;
+            }
+            // rows were deleted since the count (or the query failed and the DAO returned an empty
+            // list): this page can never fill, so recount instead of asking for it on every layout
+            if (rows.size() < expected) {
+                refresh();
+                return;
+            }
+            if (!pages.containsKey(page)) store(page, rows);
+        }, AsyncDb.FX);
+    }
+}
@@ -0,0 +1,56 @@
+package com.agenda.ui;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Guarda a Scene (e o controller) de cada tela já aberta, para que a navegação entre o menu e as
+ * telas reutilize o grafo de nós em vez de carregar o FXML de novo. Ao reexibir uma tela cujo
+ * controller implementa {@link Refreshable}, ele é avisado para buscar só o que mudou.
+ * Deve ser usada apenas na JavaFX Application Thread.
+ */
+public final class ScreenCache {
+    /** Controller de tela que é avisado quando uma Scene em cache volta a ser exibida. */
+    public interface Refreshable {
+        void onShown();
+    }
+
+    private static final Map<String, Scene> SCENES = new HashMap<>();
+    private static final Map<String, Object> CONTROLLERS = new HashMap<>();
+
+    private ScreenCache() {}
+
+    /**
+     * Mostra a tela {@code fxml} no palco, carregando-a só na primeira vez.
+     */
+    public static void show(Stage stage, String fxml, String title, double width, double height) throws IOException {
+        Scene scene = SCENES.get(fxml);
+        if (scene == null) {
+            FXMLLoader loader = new FXMLLoader(ScreenCache.class.getResource(fxml));
+            Parent root = loader.load();
+            scene = new Scene(root, width, height);
+            SCENES.put(fxml, scene);
+            if (loader.getController() != null) CONTROLLERS.put(fxml, loader.getController());
+        } else if (CONTROLLERS.get(fxml) instanceof Refreshable r) {
+            r.onShown();
+        }
+        stage.setTitle(title);
+        stage.setScene(scene);
+    }
+
+    /** Descarta a tela; a próxima navegação carrega o FXML de novo. */
+    public static void evict(String fxml) {
+        SCENES.remove(fxml);
+        CONTROLLERS.remove(fxml);
+    }
+
+    static void showMenu(Stage stage) throws IOException {
+        show(stage, "/menu.fxml", "Agenda - Menu", 700, 450);
+    }
+}
@@ -0,0 +1,102 @@
+package com.agenda.ui;
+
+import com.agenda.dao.ChangeBus;
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.model.Contagem;
+import com.agenda.model.Contato;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Janela com as contagens de compromissos (total, últimas semanas e contatos com mais compromissos).
+ * Os números vêm das tabelas de contagem (ver {@link CompromissoDAO#countTotal}), então abrir e
+ * atualizar a janela não depende do tamanho da agenda; enquanto ela está aberta, toda alteração em
+ * compromissos recarrega os números.
+ */
+class StatsDialog {
+    private static final DateTimeFormatter WEEK_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int WEEKS = 8;
+    private static final int TOP_CONTATOS = 10;
+
+    private static final class Snapshot {
+        Contagem total;
+        final List<String> weeks = new ArrayList<>();
+        final List<String> contatos = new ArrayList<>();
+    }
+
+    private final CompromissoDAO dao = new CompromissoDAO();
+    private final ContatoDAO contatoDao = new ContatoDAO();
+    private final Label totalLabel = new Label();
+    private final ListView<String> weeksList = new ListView<>();
+    private final ListView<String> contatosList = new ListView<>();
+    private final Debouncer reload = new Debouncer(Duration.millis(300));
+
+    static void show(Window owner) {
+        new StatsDialog().open(owner);
+    }
+
+    private void open(Window owner) {
+        weeksList.setPrefHeight(200);
+        contatosList.setPrefHeight(240);
+        Alert dialog = new Alert(Alert.AlertType.NONE);
+        dialog.initOwner(owner);
+        dialog.setTitle("Estatísticas");
+        dialog.setHeaderText("Compromissos");
+        dialog.getDialogPane().setContent(new VBox(8, totalLabel,
+                new Label("Últimas " + WEEKS + " semanas (início da semana)"), weeksList,
+                new Label("Contatos com mais compromissos"), contatosList));
+        dialog.getButtonTypes().setAll(ButtonType.CLOSE);
+
+        Runnable unsubscribe = ChangeBus.subscribe(change -> {
+            if (change.table == ChangeBus.Table.COMPROMISSOS) AsyncDb.FX.execute(() -> reload.run(this::load));
+        });
+        dialog.setOnHidden(e -> {
+            unsubscribe.run();
+            reload.cancel();
+        });
+        load();
+        dialog.show();
+    }
+
+    private void load() {
+        AsyncDb.supply(this::read, s -> {
+            totalLabel.setText("Total: " + s.total);
+            weeksList.getItems().setAll(s.weeks);
+            contatosList.getItems().setAll(s.contatos);
+        });
+    }
+
+    private Snapshot read() {
+        Snapshot s = new Snapshot();
+        s.total = dao.countTotal();
+
+        LocalDate lastWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate firstWeek = lastWeek.minusWeeks(WEEKS - 1);
+        Map<LocalDate, Contagem> weeks = dao.countPerWeek(firstWeek, lastWeek.plusDays(6));
+        for (LocalDate w = lastWeek; !w.isBefore(firstWeek); w = w.minusWeeks(1)) {
+            s.weeks.add(w.format(WEEK_FMT) + ": " + weeks.getOrDefault(w, Contagem.ZERO));
+        }
+
+        int shown = 0;
+        for (Map.Entry<Integer, Contagem> e : dao.countPerContato().entrySet()) {
+            if (shown++ == TOP_CONTATOS) break;
+            Contato c = contatoDao.findById(e.getKey());
+            s.contatos.add((c == null ? "#" + e.getKey() : c.getNome()) + ": " + e.getValue());
+        }
+        return s;
+    }
+}
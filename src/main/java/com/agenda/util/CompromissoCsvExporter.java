@@ -1,24 +1,34 @@
 package com.agenda.util;
 
+import com.agenda.dao.CompromissoDAO;
 import com.agenda.model.Compromisso;
 import com.agenda.model.Contato;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CompromissoCsvExporter {
-    public static void export(List<Compromisso> compromissos, List<Contato> contatos, File file) throws IOException {
-        Path p = file.toPath();
-        Path parent = p.getParent();
-        if (parent != null) Files.createDirectories(parent);
+    static final String HEADER = "id,contato_id,contato_nome,datetime,local,online,descricao";
+    // linhas por trecho na exportação paralela
+    static final int PARALLEL_CHUNK_ROWS = 50_000;
 
+    public static void export(List<Compromisso> compromissos, List<Contato> contatos, File file) throws IOException {
         Map<Integer, String> nomeMap = new HashMap<>();
         if (contatos != null) {
             for (Contato c : contatos) {
@@ -26,34 +36,165 @@ public class CompromissoCsvExporter {
             }
         }
 
-        try (BufferedWriter w = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
-            w.write("id,contato_id,contato_nome,datetime,local,online,descricao");
-            w.newLine();
+        try (CsvWriter w = CsvExporter.open(file)) {
+            w.raw(HEADER);
             for (Compromisso c : compromissos) {
-                String nome = nomeMap.getOrDefault(c.getContatoId(), "");
-                w.write(csvEscape(c.getId() == null ? "" : c.getId().toString()));
-                w.write(',');
-                w.write(csvEscape(c.getContatoId() == null ? "" : c.getContatoId().toString()));
-                w.write(',');
-                w.write(csvEscape(nome));
-                w.write(',');
-                w.write(csvEscape(c.getDateTime() == null ? "" : c.getDateTime().toString()));
-                w.write(',');
-                w.write(csvEscape(c.getLocal()));
-                w.write(',');
-                w.write(csvEscape(Boolean.toString(c.isOnline())));
-                w.write(',');
-                w.write(csvEscape(c.getDescricao()));
-                w.newLine();
+                writeRow(w, c, nomeMap.getOrDefault(c.getContatoId(), ""));
+            }
+        }
+    }
+
+    /**
+     * Exporta direto do banco: os compromissos são lidos com um cursor já com o nome do contato (JOIN)
+     * e escritos linha a linha, com memória constante. Devolve false se a exportação foi cancelada;
+     * nesse caso o arquivo é apagado.
+     */
+    public static boolean export(CompromissoDAO dao, File file, ExportProgress progress) throws IOException {
+        long total = dao.count(null, null, null);
+        long[] rows = {0};
+        boolean completed = CsvExporter.stream(file, HEADER, progress, w -> dao.forEachWithContatoNome((c, nome) -> {
+            if (rows[0] % CsvExporter.PROGRESS_INTERVAL == 0) {
+                if (progress.isCancelled()) return false;
+                progress.update(rows[0], total);
+            }
+            try {
+                writeRow(w, c, nome == null ? "" : nome);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+            return true;
+        }));
+        if (completed) progress.update(rows[0], total);
+        return completed;
+    }
+
+    /**
+     * Exportação paralela: os compromissos são lidos por um único cursor (uma conexão de leitura, um
+     * único estado do banco, como na exportação sequencial) e separados em trechos de
+     * {@value #PARALLEL_CHUNK_ROWS} linhas; cada trecho é formatado em um buffer de bytes em um
+     * ForkJoinPool e os buffers são gravados em ordem no FileChannel. O arquivo resultante é idêntico,
+     * byte a byte, ao da exportação sequencial. As threads de formatação não usam conexões, então a
+     * exportação não ocupa o pool de leitura da interface. No máximo {@code 2 * parallelism} trechos
+     * ficam em memória ao mesmo tempo. Devolve false se a exportação foi cancelada; nesse caso o
+     * arquivo é apagado.
+     */
+    public static boolean exportParallel(CompromissoDAO dao, File file, int parallelism, ExportProgress progress) throws IOException {
+        return exportParallel(dao, file, parallelism, PARALLEL_CHUNK_ROWS, progress);
+    }
+
+    static boolean exportParallel(CompromissoDAO dao, File file, int parallelism, int chunkRows, ExportProgress progress) throws IOException {
+        int threads = Math.max(1, parallelism);
+        long total = dao.count(null, null, null);
+
+        Path p = file.toPath();
+        Path parent = p.getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayDeque<ForkJoinTask<ChunkBuffer>> inFlight = new ArrayDeque<>();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, ByteBuffer.wrap((HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)));
+            long[] written = {0};
+            Chunk[] chunk = {new Chunk(chunkRows)};
+            dao.forEachWithContatoNome((c, nome) -> {
+                chunk[0].add(c, nome);
+                if (chunk[0].size() < chunkRows) return true;
+                if (progress.isCancelled()) return false;
+                Chunk full = chunk[0];
+                chunk[0] = new Chunk(chunkRows);
+                inFlight.add(pool.submit(() -> formatChunk(full)));
+                // the reader waits for the oldest chunk once the window is full
+                if (inFlight.size() >= 2 * threads) written[0] += writeOldest(ch, inFlight, total, written[0], progress);
+                return true;
+            });
+            if (!progress.isCancelled()) {
+                if (chunk[0].size() > 0) inFlight.add(pool.submit(() -> formatChunk(chunk[0])));
+                while (!inFlight.isEmpty()) written[0] += writeOldest(ch, inFlight, total, written[0], progress);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<ChunkBuffer> t : inFlight) t.cancel(false);
+            pool.shutdownNow();
+        }
+        if (progress.isCancelled()) {
+            Files.deleteIfExists(p);
+            return false;
+        }
+        return true;
+    }
+
+    private static long writeOldest(FileChannel ch, ArrayDeque<ForkJoinTask<ChunkBuffer>> inFlight, long total, long written, ExportProgress progress) {
+        ChunkBuffer buffer = inFlight.poll().join();
+        try {
+            writeFully(ch, buffer.toByteBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        progress.update(written + buffer.rows, total);
+        return buffer.rows;
+    }
+
+    private static ChunkBuffer formatChunk(Chunk chunk) {
+        ChunkBuffer out = new ChunkBuffer(chunk.size() * 64);
+        try (CsvWriter w = new CsvWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (int i = 0; i < chunk.size(); i++) {
+                String nome = chunk.nomes.get(i);
+                writeRow(w, chunk.compromissos.get(i), nome == null ? "" : nome);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.rows = chunk.size();
+        return out;
+    }
+
+    // linhas lidas do cursor e ainda não formatadas
+    private static final class Chunk {
+        final List<Compromisso> compromissos;
+        final List<String> nomes;
+
+        Chunk(int capacity) {
+            compromissos = new ArrayList<>(capacity);
+            nomes = new ArrayList<>(capacity);
+        }
+
+        void add(Compromisso c, String nome) {
+            compromissos.add(c);
+            nomes.add(nome);
+        }
+
+        int size() {
+            return compromissos.size();
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) ch.write(b);
+    }
+
+    // bytes de um trecho já formatado, expostos sem cópia
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+        long rows;
+
+        ChunkBuffer(int size) {
+            super(size);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
         }
     }
 
-    private static String csvEscape(String s) {
-        if (s == null) return "";
-        boolean needQuotes = s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r");
-        String escaped = s.replace("\"", "\"\"");
-        if (needQuotes) return "\"" + escaped + "\"";
-        return escaped;
+    private static void writeRow(CsvWriter w, Compromisso c, String nome) throws IOException {
+        w.field(c.getId())
+                .field(c.getContatoId())
+                .field(nome)
+                .field(c.getDateTime())
+                .field(c.getLocal())
+                .field(c.isOnline())
+                .field(c.getDescricao())
+                .endRow();
     }
 }
@@ -1,48 +1,106 @@
 package com.agenda.util;
 
+import com.agenda.dao.ContatoDAO;
 import com.agenda.model.Contato;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 public class CsvExporter {
+    // buffer grande para que a escrita no canal aconteça em blocos
+    static final int STREAM_BUFFER_CHARS = 1 << 20;
+    // a cada quantas linhas o progresso é reportado/verificado o cancelamento
+    static final int PROGRESS_INTERVAL = 1000;
+
     /**
      * Exporta contatos para um arquivo CSV com cabeçalho: id,nome,email,telefone
      */
     public static void export(List<Contato> contatos, File file) throws IOException {
-        // garante que o diretório pai exista
-        Path p = file.toPath();
-        Path parent = p.getParent();
-        if (parent != null) Files.createDirectories(parent);
-
-        try (BufferedWriter w = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+        try (CsvWriter w = open(file)) {
             // header
-            w.write("id,nome,email,telefone");
-            w.newLine();
-
+            w.raw("id,nome,email,telefone");
             for (Contato c : contatos) {
-                w.write(csvEscape(c.getId() == null ? "" : c.getId().toString()));
-                w.write(',');
-                w.write(csvEscape(c.getNome()));
-                w.write(',');
-                w.write(csvEscape(c.getEmail()));
-                w.write(',');
-                w.write(csvEscape(c.getTelefone()));
-                w.newLine();
+                writeRow(w, c);
             }
         }
     }
 
-    private static String csvEscape(String s) {
-        if (s == null) return "";
-        boolean needQuotes = s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r");
-        String escaped = s.replace("\"", "\"\"");
-        if (needQuotes) return "\"" + escaped + "\"";
-        return escaped;
+    /**
+     * Exporta direto do banco, lendo os contatos com um cursor e escrevendo cada linha no arquivo
+     * (memória constante). Devolve false se a exportação foi cancelada; nesse caso o arquivo é apagado.
+     */
+    public static boolean export(ContatoDAO dao, File file, ExportProgress progress) throws IOException {
+        long total = dao.count();
+        long[] rows = {0};
+        boolean completed = stream(file, "id,nome,email,telefone", progress, w -> dao.forEach(c -> {
+            if (rows[0] % PROGRESS_INTERVAL == 0) {
+                if (progress.isCancelled()) return false;
+                progress.update(rows[0], total);
+            }
+            try {
+                writeRow(w, c);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+            return true;
+        }));
+        if (completed) progress.update(rows[0], total);
+        return completed;
+    }
+
+    private static void writeRow(CsvWriter w, Contato c) throws IOException {
+        w.field(c.getId())
+                .field(c.getNome())
+                .field(c.getEmail())
+                .field(c.getTelefone())
+                .endRow();
+    }
+
+    interface StreamBody {
+        void writeRows(CsvWriter w);
+    }
+
+    /**
+     * Abre o arquivo (criando o diretório pai) para escrita de CSV em UTF-8.
+     */
+    static CsvWriter open(File file) throws IOException {
+        Path p = file.toPath();
+        // garante que o diretório pai exista
+        Path parent = p.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        return new CsvWriter(new OutputStreamWriter(Files.newOutputStream(p), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Abre o arquivo como FileChannel com um buffer grande, escreve cabeçalho e linhas e apaga o arquivo
+     * se a exportação for cancelada. Erros de escrita dentro de {@code body} chegam como UncheckedIOException.
+     */
+    static boolean stream(File file, String header, ExportProgress progress, StreamBody body) throws IOException {
+        Path p = file.toPath();
+        Path parent = p.getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             CsvWriter w = new CsvWriter(new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8), STREAM_BUFFER_CHARS)) {
+            w.raw(header);
+            body.writeRows(w);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (progress.isCancelled()) {
+            Files.deleteIfExists(p);
+            return false;
+        }
+        return true;
     }
 }
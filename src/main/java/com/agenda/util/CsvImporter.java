@@ -0,0 +1,435 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import com.agenda.validation.DuplicateContatoIndex;
+import com.agenda.validation.EmailValidator;
+import com.agenda.validation.PhoneValidator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Importa contatos e compromissos dos mesmos formatos CSV escritos por {@link CsvExporter} e
+ * {@link CompromissoCsvExporter}.
+ * <p>
+ * O arquivo é lido em streaming; blocos de linhas são validados em paralelo (EmailValidator,
+ * PhoneValidator, datas) enquanto as linhas aceitas seguem, na ordem do arquivo, para um INSERT em
+ * lote com commit a cada {@code commitSize} linhas. Linhas rejeitadas vão para um arquivo de
+ * rejeitados com as colunas originais e uma coluna {@code motivo}; ele só é criado se houver rejeições.
+ * Isso inclui as linhas que o próprio banco recusa (ex.: UNIQUE): o lote é refeito linha a linha e o
+ * erro do SQLite vira o motivo.
+ * <p>
+ * Os ids do arquivo não são reaproveitados: o banco gera novos. Importando contatos e depois
+ * compromissos com a mesma instância (ex.: {@link #importAgenda}), o {@code contato_id} dos
+ * compromissos é traduzido para o id novo do contato. Um {@code contato_id} que não veio dessa
+ * importação é rejeitado, já que em outra agenda o mesmo número é outro contato; só com
+ * {@link #setUseExistingContatoIds} ele é aceito como id de um contato que já existe no banco.
+ */
+public class CsvImporter {
+    public static final int DEFAULT_COMMIT_SIZE = 10_000;
+    // linhas por bloco enviado à validação paralela
+    static final int BLOCK_ROWS = 4096;
+
+    private static final Object REJECTED = new Object();
+
+    private final ContatoDAO contatoDao;
+    private final CompromissoDAO compDao;
+    private final int commitSize;
+    // id do contato no arquivo importado -> Contato gravado (ou REJECTED)
+    private final IntObjectMap<Object> importedContatos = new IntObjectMap<>();
+    private boolean useExistingContatoIds;
+
+    public CsvImporter(ContatoDAO contatoDao, CompromissoDAO compDao) {
+        this(contatoDao, compDao, DEFAULT_COMMIT_SIZE);
+    }
+
+    public CsvImporter(ContatoDAO contatoDao, CompromissoDAO compDao, int commitSize) {
+        this.contatoDao = contatoDao;
+        this.compDao = compDao;
+        this.commitSize = Math.max(1, commitSize);
+    }
+
+    /**
+     * Aceita, nos compromissos, um {@code contato_id} que não foi importado por esta instância se
+     * houver um contato com esse id no banco. Só faz sentido quando o arquivo veio deste mesmo banco.
+     */
+    public void setUseExistingContatoIds(boolean useExistingContatoIds) {
+        this.useExistingContatoIds = useExistingContatoIds;
+    }
+
+    /** Arquivo de rejeitados padrão, ao lado do importado: contatos.csv -> contatos-rejeitados.csv. */
+    public static File rejectsFileFor(File csv) {
+        String name = csv.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csv.getAbsoluteFile().getParentFile(), base + "-rejeitados.csv");
+    }
+
+    /** Resultado de uma importação. */
+    public static class Result {
+        public final long imported;
+        public final long rejected;
+        public final boolean cancelled;
+        /**
+         * Por que a gravação parou antes do fim do arquivo (ex.: banco ocupado), ou null se todas as
+         * linhas foram gravadas ou rejeitadas. As linhas depois do ponto de parada não foram lidas.
+         */
+        public final String erro;
+
+        Result(long imported, long rejected, boolean cancelled) {
+            this(imported, rejected, cancelled, null);
+        }
+
+        Result(long imported, long rejected, boolean cancelled, String erro) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.cancelled = cancelled;
+            this.erro = erro;
+        }
+    }
+
+    /**
+     * Importa contatos (cabeçalho id,nome,email,telefone; a coluna id é opcional). Além das regras
+     * da tela (nome obrigatório, email/telefone válidos), rejeita duplicados do banco e do próprio arquivo.
+     */
+    public Result importContatos(File csv, File rejects, ExportProgress progress) throws IOException {
+        try (CsvReader in = new CsvReader(Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8))) {
+            String[] header = in.next();
+            if (header == null) return new Result(0, 0, false);
+            int id = column(header, "id", false);
+            int nome = column(header, "nome", true);
+            int email = column(header, "email", true);
+            int telefone = column(header, "telefone", true);
+
+            DuplicateContatoIndex duplicates = new DuplicateContatoIndex();
+            contatoDao.forEach(c -> {
+                duplicates.put(c);
+                return true;
+            });
+            int[] pendingId = {0};
+
+            Pipeline<Contato> rows = new Pipeline<>(in, header, rejects, progress, f -> {
+                String n = field(f, nome);
+                String e = field(f, email);
+                String t = field(f, telefone);
+                if (n.isEmpty()) return Row.reject(f, "nome obrigatório");
+                if (!e.isEmpty() && !EmailValidator.isValid(e)) return Row.reject(f, "email inválido");
+                if (!t.isEmpty() && !PhoneValidator.isValid(t)) return Row.reject(f, "telefone inválido");
+                return Row.accept(f, new Contato(n, e, t));
+            }) {
+                @Override
+                String admit(String[] f, Contato c) {
+                    if (duplicates.isDuplicate(null, c.getNome(), c.getEmail(), c.getTelefone())) return "contato duplicado";
+                    // ids negativos marcam contatos do arquivo que ainda não foram gravados
+                    duplicates.put(new Contato(--pendingId[0], c.getNome(), c.getEmail(), c.getTelefone()));
+                    Integer fileId = id < 0 ? null : parseInt(field(f, id));
+                    if (fileId != null) importedContatos.put(fileId, c);
+                    return null;
+                }
+
+                @Override
+                void rejected(String[] f) {
+                    // compromissos que apontam para este contato também serão rejeitados
+                    Integer fileId = id < 0 ? null : parseInt(field(f, id));
+                    if (fileId != null) importedContatos.put(fileId, REJECTED);
+                }
+            };
+            return rows.run(contatoDao::insertBatched, commitSize);
+        }
+    }
+
+    /**
+     * Importa compromissos (cabeçalho id,contato_id,contato_nome,datetime,local,online,descricao;
+     * id e contato_nome são opcionais). Data/hora é obrigatória e o local, para compromissos presenciais.
+     */
+    public Result importCompromissos(File csv, File rejects, ExportProgress progress) throws IOException {
+        try (CsvReader in = new CsvReader(Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8))) {
+            String[] header = in.next();
+            if (header == null) return new Result(0, 0, false);
+            int contato = column(header, "contato_id", true);
+            int datetime = column(header, "datetime", true);
+            int local = column(header, "local", true);
+            int online = column(header, "online", true);
+            int descricao = column(header, "descricao", true);
+
+            IntObjectMap<Boolean> existing = new IntObjectMap<>(useExistingContatoIds ? Math.max(16, contatoDao.count()) : 16);
+            if (useExistingContatoIds) {
+                contatoDao.forEach(c -> {
+                    existing.put(c.getId(), Boolean.TRUE);
+                    return true;
+                });
+            }
+
+            Pipeline<Compromisso> rows = new Pipeline<>(in, header, rejects, progress, f -> {
+                Integer contatoId = parseInt(field(f, contato));
+                if (contatoId == null) return Row.reject(f, "contato_id inválido");
+                String dt = field(f, datetime);
+                if (dt.isEmpty()) return Row.reject(f, "data/hora obrigatória");
+                LocalDateTime dateTime;
+                try {
+                    dateTime = LocalDateTime.parse(dt);
+                } catch (DateTimeParseException ex) {
+                    return Row.reject(f, "data/hora inválida");
+                }
+                String on = field(f, online);
+                boolean isOnline;
+                if (on.equalsIgnoreCase("true") || on.equals("1")) isOnline = true;
+                else if (on.isEmpty() || on.equalsIgnoreCase("false") || on.equals("0")) isOnline = false;
+                else return Row.reject(f, "valor de online inválido");
+                String l = field(f, local);
+                if (!isOnline && l.isEmpty()) return Row.reject(f, "local obrigatório para compromisso presencial");
+                return Row.accept(f, new Compromisso(contatoId, dateTime, l, isOnline, field(f, descricao)));
+            }) {
+                @Override
+                String admit(String[] f, Compromisso c) {
+                    int fileId = c.getContatoId();
+                    Object imported = importedContatos.get(fileId);
+                    if (imported == REJECTED) return "contato rejeitado na importação";
+                    if (imported != null) {
+                        Integer newId = ((Contato) imported).getId();
+                        if (newId == null) return "contato não importado";
+                        c.setContatoId(newId);
+                        return null;
+                    }
+                    if (!useExistingContatoIds) return "contato não importado junto";
+                    return existing.containsKey(fileId) ? null : "contato inexistente";
+                }
+            };
+            return rows.run(compDao::insertBatched, commitSize);
+        }
+    }
+
+    /**
+     * Importa contatos e, em seguida, os compromissos que apontam para eles (os dois CSV exportados
+     * de uma mesma agenda), com os rejeitados em {@link #rejectsFileFor} de cada arquivo. Se a
+     * importação dos contatos for cancelada ou parar por erro, os compromissos não são lidos.
+     */
+    public Result importAgenda(File contatosCsv, File compromissosCsv, ExportProgress progress) throws IOException {
+        Result contatos = importContatos(contatosCsv, rejectsFileFor(contatosCsv), progress);
+        if (contatos.cancelled || contatos.erro != null) return contatos;
+        Result comps = importCompromissos(compromissosCsv, rejectsFileFor(compromissosCsv), progress);
+        return new Result(contatos.imported + comps.imported, contatos.rejected + comps.rejected, comps.cancelled, comps.erro);
+    }
+
+    private interface BatchInsert<T> {
+        int insert(Iterator<T> rows, int commitSize, BiConsumer<? super T, SQLException> rejected);
+    }
+
+    private static final class Row<T> {
+        final String[] fields;
+        final T value;
+        final String reason;
+
+        private Row(String[] fields, T value, String reason) {
+            this.fields = fields;
+            this.value = value;
+            this.reason = reason;
+        }
+
+        static <T> Row<T> accept(String[] fields, T value) {
+            return new Row<>(fields, value, null);
+        }
+
+        static <T> Row<T> reject(String[] fields, String reason) {
+            return new Row<>(fields, null, reason);
+        }
+    }
+
+    /**
+     * Liga as três etapas: leitura (thread atual), validação em blocos no ForkJoinPool comum e
+     * gravação em lote, que consome este iterador na ordem do arquivo. No máximo
+     * {@code 2 * paralelismo} blocos ficam em validação ao mesmo tempo.
+     */
+    private abstract static class Pipeline<T> implements Iterator<T> {
+        private final CsvReader in;
+        private final String[] header;
+        private final File rejectsFile;
+        private final ExportProgress progress;
+        private final Function<String[], Row<T>> validate;
+        private final int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        private final ArrayDeque<CompletableFuture<List<Row<T>>>> inFlight = new ArrayDeque<>();
+
+        private List<Row<T>> block = List.of();
+        private int blockPos;
+        private boolean eof;
+        private boolean cancelled;
+        private T next;
+        private String[] nextFields;
+        // linhas entregues ao lote atual, para achar as colunas de uma linha que o banco recusar
+        private final Map<T, String[]> written = new IdentityHashMap<>();
+        private int commitSize;
+        private long handedOut;
+        private boolean drained;
+        private SQLException writeError;
+        private long processed;
+        private long rejected;
+        private CsvWriter rejects;
+
+        Pipeline(CsvReader in, String[] header, File rejectsFile, ExportProgress progress, Function<String[], Row<T>> validate) {
+            this.in = in;
+            this.header = header;
+            this.rejectsFile = rejectsFile;
+            this.progress = progress;
+            this.validate = validate;
+        }
+
+        /**
+         * Verificação sequencial, na ordem do arquivo, de uma linha já validada (duplicados,
+         * referências). Devolve o motivo da rejeição ou null para gravar a linha.
+         */
+        abstract String admit(String[] fields, T value);
+
+        /** Chamado para cada linha rejeitada, em qualquer etapa. */
+        void rejected(String[] fields) {
+        }
+
+        Result run(BatchInsert<T> dao, int commitSize) throws IOException {
+            this.commitSize = commitSize;
+            try {
+                int imported = dao.insert(this, commitSize, this::rejectedByDatabase);
+                progress.update(processed, -1);
+                String erro = null;
+                if (!drained && !cancelled) erro = writeError != null ? writeError.getMessage() : "gravação interrompida";
+                return new Result(imported, rejected, cancelled, erro);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (CompletableFuture<?> f : inFlight) f.cancel(false);
+                if (rejects != null) rejects.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            try {
+                while (true) {
+                    if (blockPos == block.size() && !nextBlock()) {
+                        drained = !cancelled;
+                        return false;
+                    }
+                    Row<T> row = block.get(blockPos++);
+                    if (processed++ % CsvExporter.PROGRESS_INTERVAL == 0) {
+                        if (progress.isCancelled()) {
+                            cancelled = true;
+                            return false;
+                        }
+                        progress.update(processed, -1);
+                    }
+                    String reason = row.reason != null ? row.reason : admit(row.fields, row.value);
+                    if (reason == null) {
+                        next = row.value;
+                        nextFields = row.fields;
+                        return true;
+                    }
+                    reject(row.fields, reason);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T t = next;
+            next = null;
+            // the insert reads exactly commitSize rows per block and reports a block's failures
+            // before reading on, so the previous block's rows are no longer needed
+            if (handedOut++ % commitSize == 0) written.clear();
+            written.put(t, nextFields);
+            return t;
+        }
+
+        private void rejectedByDatabase(T row, SQLException e) {
+            writeError = e;
+            try {
+                String[] fields = written.remove(row);
+                reject(fields != null ? fields : new String[0], "erro ao gravar: " + e.getMessage());
+            } catch (IOException io) {
+                throw new UncheckedIOException(io);
+            }
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (cancelled) return false;
+            while (!eof && inFlight.size() < window) {
+                List<String[]> records = new ArrayList<>(BLOCK_ROWS);
+                String[] r;
+                while (records.size() < BLOCK_ROWS && (r = in.next()) != null) records.add(r);
+                if (records.size() < BLOCK_ROWS) eof = true;
+                if (records.isEmpty()) break;
+                inFlight.add(CompletableFuture.supplyAsync(() -> {
+                    List<Row<T>> rows = new ArrayList<>(records.size());
+                    for (String[] f : records) rows.add(validate.apply(f));
+                    return rows;
+                }));
+            }
+            CompletableFuture<List<Row<T>>> f = inFlight.poll();
+            if (f == null) return false;
+            try {
+                block = f.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+            blockPos = 0;
+            return true;
+        }
+
+        private void reject(String[] fields, String reason) throws IOException {
+            rejected++;
+            rejected(fields);
+            if (rejectsFile == null) return;
+            if (rejects == null) {
+                rejects = CsvExporter.open(rejectsFile);
+                for (String h : header) rejects.field(h);
+                rejects.field("motivo").endRow();
+            }
+            for (int i = 0; i < header.length; i++) rejects.field(i < fields.length ? fields[i] : "");
+            rejects.field(reason).endRow();
+        }
+    }
+
+    private static int column(String[] header, String name, boolean required) throws IOException {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equalsIgnoreCase(name)) return i;
+        }
+        if (required) throw new IOException("Coluna obrigatória ausente no CSV: " + name + " (cabeçalho: " + Arrays.toString(header) + ")");
+        return -1;
+    }
+
+    private static String field(String[] f, int i) {
+        return i < f.length ? f[i].trim() : "";
+    }
+
+    private static Integer parseInt(String s) {
+        if (s.isEmpty()) return null;
+        try {
+            return Integer.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
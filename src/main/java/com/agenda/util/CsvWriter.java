@@ -0,0 +1,200 @@
+package com.agenda.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+
+/**
+ * Escritor de CSV usado pelos exportadores.
+ * <p>
+ * Cada campo é escapado em uma única passada direto para um buffer de chars reaproveitado
+ * (sem Strings intermediárias), e números/booleanos são escritos sem boxing. Campos com vírgula,
+ * aspas ou quebra de linha vão entre aspas, com as aspas internas duplicadas. Não é thread-safe.
+ */
+public class CsvWriter implements Closeable, Flushable {
+    private static final char[] TRUE = "true".toCharArray();
+    private static final char[] FALSE = "false".toCharArray();
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    private final Writer out;
+    private char[] buf;
+    private int pos;
+    private boolean rowStarted;
+
+    public CsvWriter(Writer out) {
+        this(out, 1 << 16);
+    }
+
+    public CsvWriter(Writer out, int bufferSize) {
+        this.out = out;
+        this.buf = new char[Math.max(64, bufferSize)];
+    }
+
+    /** Escreve uma linha de texto sem escape (ex.: cabeçalho), terminando a linha. */
+    public CsvWriter raw(String line) throws IOException {
+        separator();
+        int len = line.length();
+        ensure(len);
+        line.getChars(0, len, buf, pos);
+        pos += len;
+        return endRow();
+    }
+
+    public CsvWriter field(String s) throws IOException {
+        separator();
+        if (s == null || s.isEmpty()) return this;
+        int len = s.length();
+        // pior caso: todas aspas duplicadas + aspas de abertura/fechamento
+        ensure(2 * len + 2);
+        int start = pos;
+        int p = start + 1; // slot reserved for the opening quote
+        boolean quote = false;
+        char[] b = buf;
+        for (int i = 0; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                b[p++] = '"';
+                quote = true;
+            } else if (ch == ',' || ch == '\n' || ch == '\r') {
+                quote = true;
+            }
+            b[p++] = ch;
+        }
+        if (quote) {
+            b[start] = '"';
+            b[p++] = '"';
+            pos = p;
+        } else {
+            // nothing to quote: slide the text over the reserved slot
+            System.arraycopy(b, start + 1, b, start, p - start - 1);
+            pos = p - 1;
+        }
+        return this;
+    }
+
+    public CsvWriter field(int v) throws IOException {
+        return field((long) v);
+    }
+
+    public CsvWriter field(long v) throws IOException {
+        separator();
+        ensure(20);
+        if (v == Long.MIN_VALUE) {
+            String s = Long.toString(v);
+            s.getChars(0, s.length(), buf, pos);
+            pos += s.length();
+            return this;
+        }
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + (v % 10));
+            v /= 10;
+        }
+        pos = end;
+        return this;
+    }
+
+    /** Inteiro opcional: null vira campo vazio. */
+    public CsvWriter field(Integer v) throws IOException {
+        if (v == null) return empty();
+        return field(v.intValue());
+    }
+
+    public CsvWriter field(boolean v) throws IOException {
+        separator();
+        char[] s = v ? TRUE : FALSE;
+        ensure(s.length);
+        System.arraycopy(s, 0, buf, pos, s.length);
+        pos += s.length;
+        return this;
+    }
+
+    /**
+     * Data/hora no mesmo formato de {@link LocalDateTime#toString()} (yyyy-MM-ddTHH:mm[:ss]).
+     */
+    public CsvWriter field(LocalDateTime dt) throws IOException {
+        if (dt == null) return empty();
+        int year = dt.getYear();
+        if (year < 0 || year > 9999 || dt.getNano() != 0) return field(dt.toString());
+        separator();
+        ensure(19);
+        pos = two(pos, year / 100);
+        pos = two(pos, year % 100);
+        buf[pos++] = '-';
+        pos = two(pos, dt.getMonthValue());
+        buf[pos++] = '-';
+        pos = two(pos, dt.getDayOfMonth());
+        buf[pos++] = 'T';
+        pos = two(pos, dt.getHour());
+        buf[pos++] = ':';
+        pos = two(pos, dt.getMinute());
+        if (dt.getSecond() != 0) {
+            buf[pos++] = ':';
+            pos = two(pos, dt.getSecond());
+        }
+        return this;
+    }
+
+    public CsvWriter empty() throws IOException {
+        separator();
+        return this;
+    }
+
+    public CsvWriter endRow() throws IOException {
+        ensure(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buf, pos, LINE_SEPARATOR.length);
+        pos += LINE_SEPARATOR.length;
+        rowStarted = false;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    private int two(int at, int v) {
+        buf[at] = (char) ('0' + v / 10);
+        buf[at + 1] = (char) ('0' + v % 10);
+        return at + 2;
+    }
+
+    private void separator() throws IOException {
+        if (rowStarted) {
+            ensure(1);
+            buf[pos++] = ',';
+        }
+        rowStarted = true;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (pos + n <= buf.length) return;
+        drain();
+        if (n > buf.length) buf = new char[Math.max(n, buf.length * 2)];
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.agenda.util;
+
+/**
+ * Acompanhamento de uma exportação em andamento: recebe o número de linhas escritas e permite cancelar.
+ */
+public interface ExportProgress {
+    ExportProgress NONE = new ExportProgress() {
+        @Override
+        public void update(long rows, long total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /** Chamado periodicamente com as linhas já escritas e o total esperado (ou -1 se desconhecido). */
+    void update(long rows, long total);
+
+    /** Quando true, a exportação para e o arquivo parcial é apagado. */
+    boolean isCancelled();
+}
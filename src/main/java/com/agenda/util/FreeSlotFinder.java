@@ -0,0 +1,144 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.OccupiedStarts;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encontra horários em que nenhum dos contatos informados tem compromisso, para marcar reuniões.
+ * <p>
+ * As ocorrências de todos os contatos chegam em uma única sequência ordenada
+ * ({@link CompromissoDAO#findOccupiedStarts}, merge de k vias das listas de cada contato) e são
+ * percorridas uma vez: como cada compromisso ocupa [datetime, datetime + DURACAO), basta guardar até
+ * quando a agenda já está ocupada e cada intervalo antes do próximo início é livre. O custo é
+ * O(n log k) para n ocorrências de k contatos, sem montar as agendas individuais; a varredura é feita
+ * em segundos ({@link OccupiedStarts#epochSecond()}) e só os intervalos livres viram LocalDateTime.
+ */
+public final class FreeSlotFinder {
+    /** Um horário livre [inicio, fim). */
+    public static final class Intervalo {
+        private final LocalDateTime inicio;
+        private final LocalDateTime fim;
+
+        public Intervalo(LocalDateTime inicio, LocalDateTime fim) {
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        public LocalDateTime getInicio() { return inicio; }
+        public LocalDateTime getFim() { return fim; }
+
+        public Duration getDuracao() {
+            return Duration.between(inicio, fim);
+        }
+
+        @Override
+        public String toString() {
+            return inicio + " - " + fim;
+        }
+    }
+
+    /** Horário de trabalho: de {@code inicio} a {@code fim} nos dias informados. */
+    public static final class Expediente {
+        private final LocalTime inicio;
+        private final LocalTime fim;
+        private final Set<DayOfWeek> dias;
+
+        public Expediente(LocalTime inicio, LocalTime fim, Set<DayOfWeek> dias) {
+            if (!inicio.isBefore(fim)) throw new IllegalArgumentException("O expediente deve terminar depois de começar");
+            this.inicio = inicio;
+            this.fim = fim;
+            this.dias = dias.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(dias);
+        }
+
+        /** De segunda a sexta, de {@code inicio} a {@code fim}. */
+        public static Expediente diasUteis(LocalTime inicio, LocalTime fim) {
+            return new Expediente(inicio, fim, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+        }
+
+        public LocalTime getInicio() { return inicio; }
+        public LocalTime getFim() { return fim; }
+        public Set<DayOfWeek> getDias() { return dias; }
+    }
+
+    private final CompromissoDAO dao;
+
+    public FreeSlotFinder(CompromissoDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Horários livres de pelo menos {@code minimo} em [from, to) para todos os contatos, em ordem.
+     * Com {@code expediente} (pode ser null), só conta o horário de trabalho e cada intervalo livre
+     * fica dentro de um dia.
+     *
+     * @throws IllegalStateException se a agenda não pôde ser lida; nunca devolve a janela inteira
+     * como livre por causa de um erro
+     */
+    public List<Intervalo> find(Collection<Integer> contatoIds, LocalDateTime from, LocalDateTime to,
+                                Duration minimo, Expediente expediente) {
+        List<Intervalo> livres = new ArrayList<>();
+        if (!from.isBefore(to)) return livres;
+        Duration duracao = CompromissoDAO.DURACAO;
+        // compromissos que começaram antes de from ainda podem ocupar o início da janela
+        OccupiedStarts starts = dao.findOccupiedStarts(contatoIds, from.minus(duracao).plusSeconds(1), to);
+        long seconds = duracao.getSeconds();
+        long inicioJanela = epoch(from);
+        long livreDesde = inicioJanela;
+        while (starts.next()) {
+            long inicio = starts.epochSecond();
+            if (inicio > livreDesde) add(livres, livreDesde == inicioJanela ? from : dateTime(livreDesde), dateTime(inicio), minimo, expediente);
+            livreDesde = Math.max(livreDesde, inicio + seconds);
+        }
+        if (epoch(to) > livreDesde) add(livres, livreDesde == inicioJanela ? from : dateTime(livreDesde), to, minimo, expediente);
+        return livres;
+    }
+
+    // the free gap [inicio, fim), clipped to working hours when given
+    private static void add(List<Intervalo> livres, LocalDateTime inicio, LocalDateTime fim, Duration minimo, Expediente expediente) {
+        if (expediente == null) {
+            addIfLongEnough(livres, inicio, fim, minimo);
+            return;
+        }
+        for (LocalDate dia = inicio.toLocalDate(); dia.atTime(expediente.inicio).isBefore(fim); dia = dia.plusDays(1)) {
+            if (!expediente.dias.contains(dia.getDayOfWeek())) continue;
+            LocalDateTime a = max(inicio, dia.atTime(expediente.inicio));
+            LocalDateTime b = min(fim, dia.atTime(expediente.fim));
+            addIfLongEnough(livres, a, b, minimo);
+        }
+    }
+
+    private static void addIfLongEnough(List<Intervalo> livres, LocalDateTime inicio, LocalDateTime fim, Duration minimo) {
+        if (inicio.isBefore(fim) && Duration.between(inicio, fim).compareTo(minimo) >= 0) {
+            livres.add(new Intervalo(inicio, fim));
+        }
+    }
+
+    // same encoding as OccupiedStarts: wall-clock seconds read as UTC
+    private static long epoch(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime dateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
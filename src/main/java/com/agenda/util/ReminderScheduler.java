@@ -0,0 +1,239 @@
+package com.agenda.util;
+
+import com.agenda.dao.ChangeBus;
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Recorrencia;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Lembretes disparados {@code antecedencia} antes de cada compromisso (inclusive das ocorrências de
+ * compromissos repetidos).
+ * <p>
+ * Só os compromissos que começam dentro de um horizonte móvel ({@code horizonte} a partir de agora)
+ * ficam em memória, em uma fila de prioridade pela hora do disparo; um único thread dorme até o
+ * próximo disparo e, a cada quarto de horizonte, carrega o trecho seguinte com
+ * {@link CompromissoDAO#findOccurrences}. Alterações chegam pelo {@link ChangeBus} e recarregam só o
+ * compromisso afetado: entradas antigas não são procuradas na fila, apenas ficam inválidas (cada id
+ * tem uma geração) e são descartadas quando chegam ao topo. A geração de um id só é guardada enquanto
+ * ele tem entradas na fila.
+ * <p>
+ * O tempo vem de um {@link Clock}. Com um relógio controlado (ex.: em testes), avance o relógio e
+ * chame {@link #fireDue()} para carregar o horizonte e disparar o que venceu sem esperar o timer.
+ * Os ouvintes rodam no thread do agendador; quem mexe na UI deve repassar para a thread de UI.
+ */
+public final class ReminderScheduler {
+    public static final Duration DEFAULT_ANTECEDENCIA = Duration.ofMinutes(Long.getLong("agenda.lembrete.minutos", 15));
+    public static final Duration DEFAULT_HORIZONTE = Duration.ofHours(Long.getLong("agenda.lembrete.horizonteHoras", 24));
+
+    private static final class Entry {
+        final long fireAt;
+        final int generation;
+        final Compromisso occurrence;
+
+        Entry(long fireAt, int generation, Compromisso occurrence) {
+            this.fireAt = fireAt;
+            this.generation = generation;
+            this.occurrence = occurrence;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingLong(e -> e.fireAt)
+            .thenComparing(e -> e.occurrence.getId());
+
+    private final CompromissoDAO dao;
+    private final Clock clock;
+    private final Duration antecedencia;
+    private final Duration horizonte;
+    private final ScheduledExecutorService timer;
+    private final List<Consumer<Compromisso>> listeners = new CopyOnWriteArrayList<>();
+
+    // everything below is only touched on the timer thread
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(ORDER);
+    // geração atual de cada id alterado que ainda tem entradas na fila (ausente = 0)
+    private final Map<Integer, Integer> generations = new HashMap<>();
+    // entradas na fila por id, válidas ou não
+    private final Map<Integer, Integer> queued = new HashMap<>();
+    // início da última ocorrência já lembrada de cada id, para não repetir um lembrete ao recarregar
+    private final Map<Integer, LocalDateTime> lastFired = new HashMap<>();
+    // compromissos que começam antes deste instante já estão na fila
+    private LocalDateTime loadedUntil;
+    private ScheduledFuture<?> wake;
+    private Runnable unsubscribe;
+
+    public ReminderScheduler(CompromissoDAO dao, Clock clock) {
+        this(dao, clock, DEFAULT_ANTECEDENCIA, DEFAULT_HORIZONTE);
+    }
+
+    public ReminderScheduler(CompromissoDAO dao, Clock clock, Duration antecedencia, Duration horizonte) {
+        this.dao = dao;
+        this.clock = clock;
+        this.antecedencia = antecedencia;
+        this.horizonte = horizonte;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agenda-lembretes");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Registra quem recebe cada ocorrência quando o lembrete dispara. */
+    public void addListener(Consumer<Compromisso> listener) {
+        listeners.add(listener);
+    }
+
+    /** Carrega o primeiro horizonte e passa a acompanhar o relógio e as alterações. */
+    public void start() {
+        unsubscribe = ChangeBus.subscribe(change -> {
+            if (change.table == ChangeBus.Table.COMPROMISSOS) timer.execute(() -> onChange(change));
+        });
+        timer.execute(this::reload);
+        long refill = Math.max(1, horizonte.toMillis() / 4);
+        timer.scheduleWithFixedDelay(this::refill, refill, refill, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (unsubscribe != null) unsubscribe.run();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Carrega o horizonte até a hora do relógio, dispara agora os lembretes vencidos e espera terminar.
+     */
+    public void fireDue() {
+        call(() -> {
+            refill();
+            runDue();
+            return null;
+        });
+    }
+
+    /** Lembretes na fila (inclui entradas já invalidadas que ainda não chegaram ao topo). */
+    public int pendingCount() {
+        return call(queue::size);
+    }
+
+    // ids com geração guardada (para testes)
+    int generationCount() {
+        return call(generations::size);
+    }
+
+    private <T> T call(Callable<T> work) {
+        try {
+            return timer.submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void reload() {
+        queue.clear();
+        generations.clear();
+        queued.clear();
+        loadedUntil = LocalDateTime.now(clock);
+        refill();
+    }
+
+    private void refill() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        lastFired.values().removeIf(start -> start.isBefore(now));
+        LocalDateTime target = now.plus(horizonte);
+        if (target.isAfter(loadedUntil)) {
+            Iterator<Compromisso> it = dao.findOccurrences(loadedUntil, target, null);
+            while (it.hasNext()) add(it.next());
+            loadedUntil = target;
+        }
+        rewake();
+    }
+
+    private void onChange(ChangeBus.Change change) {
+        if (loadedUntil == null) return;
+        if (change.kind == ChangeBus.Kind.RESET) {
+            reload();
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (int id : change.ids()) {
+            // invalidate whatever is queued for this id, then queue its current occurrences
+            generations.merge(id, 1, Integer::sum);
+            if (change.kind != ChangeBus.Kind.DELETED) requeue(id, now);
+            if (!queued.containsKey(id)) generations.remove(id);
+        }
+        rewake();
+    }
+
+    private void requeue(int id, LocalDateTime now) {
+        Compromisso c = dao.findById(id);
+        if (c == null || c.getDateTime() == null) return;
+        Recorrencia r = dao.findRecorrencia(id);
+        if (r == null) {
+            if (!c.getDateTime().isBefore(now) && c.getDateTime().isBefore(loadedUntil)) add(c);
+            return;
+        }
+        Iterator<LocalDateTime> starts = r.ocorrencias(c.getDateTime(), now, loadedUntil);
+        while (starts.hasNext()) {
+            add(new Compromisso(c.getId(), c.getContatoId(), starts.next(), c.getLocal(), c.isOnline(), c.getDescricao()));
+        }
+    }
+
+    private void add(Compromisso occurrence) {
+        LocalDateTime fired = lastFired.get(occurrence.getId());
+        if (fired != null && !occurrence.getDateTime().isAfter(fired)) return;
+        long fireAt = occurrence.getDateTime().minus(antecedencia).atZone(clock.getZone()).toInstant().toEpochMilli();
+        queue.add(new Entry(fireAt, generations.getOrDefault(occurrence.getId(), 0), occurrence));
+        queued.merge(occurrence.getId(), 1, Integer::sum);
+    }
+
+    private void runDue() {
+        long now = clock.millis();
+        while (!queue.isEmpty() && queue.peek().fireAt <= now) {
+            Entry e = queue.poll();
+            Compromisso c = e.occurrence;
+            int generation = generations.getOrDefault(c.getId(), 0);
+            // last entry of this id: its generation is no longer needed
+            if (queued.merge(c.getId(), -1, Integer::sum) == 0) {
+                queued.remove(c.getId());
+                generations.remove(c.getId());
+            }
+            if (e.generation != generation) continue;
+            lastFired.put(c.getId(), c.getDateTime());
+            for (Consumer<Compromisso> l : listeners) {
+                try {
+                    l.accept(c);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+        rewake();
+    }
+
+    // one pending timer task: the earliest entry (stale ones are skipped when it fires)
+    private void rewake() {
+        if (wake != null) wake.cancel(false);
+        wake = null;
+        if (queue.isEmpty() || timer.isShutdown()) return;
+        long delay = Math.max(0, queue.peek().fireAt - clock.millis());
+        wake = timer.schedule(this::runDue, delay, TimeUnit.MILLISECONDS);
+    }
+}
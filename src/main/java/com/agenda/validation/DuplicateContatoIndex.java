@@ -0,0 +1,100 @@
+package com.agenda.validation;
+
+import com.agenda.model.Contato;
+import com.agenda.model.ContatoKeys;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice das chaves normalizadas dos contatos (ver {@link ContatoKeys}) para detectar duplicados sem
+ * percorrer a lista.
+ * <p>
+ * As chaves são as mesmas que o ContatoDAO grava nas colunas com índice UNIQUE, que rejeitam
+ * duplicados também no banco. Não é thread-safe.
+ */
+public class DuplicateContatoIndex {
+    private final Map<String, Set<Integer>> byEmail = new HashMap<>();
+    private final Map<String, Set<Integer>> byPhone = new HashMap<>();
+    private final Map<String, Set<Integer>> byName = new HashMap<>();
+    // chaves atualmente indexadas de cada contato, para remover as antigas quando ele é alterado
+    private final Map<Integer, String[]> keysById = new HashMap<>();
+
+    /**
+     * Indexa (ou reindexa, após uma alteração) o contato. Contatos sem id são ignorados.
+     */
+    public void put(Contato c) {
+        if (c == null || c.getId() == null) return;
+        remove(c.getId());
+        String email = normalizeEmail(c.getEmail());
+        String phone = normalizePhone(c.getTelefone());
+        String name = normalizeName(c.getNome());
+        String[] keys = {email, phone, name};
+        keysById.put(c.getId(), keys);
+        add(byEmail, email, c.getId());
+        add(byPhone, phone, c.getId());
+        add(byName, name, c.getId());
+    }
+
+    public void remove(Integer id) {
+        if (id == null) return;
+        String[] keys = keysById.remove(id);
+        if (keys == null) return;
+        drop(byEmail, keys[0], id);
+        drop(byPhone, keys[1], id);
+        drop(byName, keys[2], id);
+    }
+
+    public void clear() {
+        byEmail.clear();
+        byPhone.clear();
+        byName.clear();
+        keysById.clear();
+    }
+
+    /**
+     * True se outro contato (diferente de {@code excludeId}) tem o mesmo email, o mesmo telefone ou,
+     * quando email e telefone estão vazios, o mesmo nome.
+     */
+    public boolean isDuplicate(Integer excludeId, String nome, String email, String telefone) {
+        String emailNorm = normalizeEmail(email);
+        String phoneNorm = normalizePhone(telefone);
+        if (hasOther(byEmail, emailNorm, excludeId)) return true;
+        if (hasOther(byPhone, phoneNorm, excludeId)) return true;
+        return emailNorm.isEmpty() && phoneNorm.isEmpty() && hasOther(byName, normalizeName(nome), excludeId);
+    }
+
+    public static String normalizeEmail(String email) {
+        return ContatoKeys.email(email);
+    }
+
+    public static String normalizeName(String nome) {
+        return ContatoKeys.nome(nome);
+    }
+
+    public static String normalizePhone(String phone) {
+        return ContatoKeys.telefone(phone);
+    }
+
+    private static boolean hasOther(Map<String, Set<Integer>> map, String key, Integer excludeId) {
+        if (key.isEmpty()) return false;
+        Set<Integer> ids = map.get(key);
+        if (ids == null) return false;
+        return ids.size() > 1 || excludeId == null || !ids.contains(excludeId);
+    }
+
+    private static void add(Map<String, Set<Integer>> map, String key, Integer id) {
+        if (key.isEmpty()) return;
+        map.computeIfAbsent(key, k -> new HashSet<>(2)).add(id);
+    }
+
+    private static void drop(Map<String, Set<Integer>> map, String key, Integer id) {
+        if (key.isEmpty()) return;
+        Set<Integer> ids = map.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+}
@@ -0,0 +1,63 @@
+package com.agenda.dao;
+
+import com.agenda.model.Compromisso;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class BatchesTest {
+    private static final String SQL = "INSERT INTO compromissos (contato_id, datetime, local, online, descricao) VALUES (?, ?, ?, ?, ?)";
+
+    @BeforeAll
+    static void useTestDatabase() {
+        TestDatabase.use();
+    }
+
+    /** As linhas de cada bloco são lidas sem a conexão de escrita, que é pega uma vez por commit. */
+    @Test
+    void writerIsFreeWhileRowsAreRead() {
+        int rows = 2_500;
+        int commitSize = 1_000;
+        Compromisso[] inserted = new Compromisso[rows];
+        int[] busyReads = {0};
+        Iterator<Compromisso> source = new Iterator<>() {
+            int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < rows;
+            }
+
+            @Override
+            public Compromisso next() {
+                if (Database.getWritePoolStats().inUse > 0) busyReads[0]++;
+                Compromisso c = new Compromisso(1, LocalDateTime.of(2500, 1, 1, 8, 0).plusMinutes(next), "Sala", false, "lote " + next);
+                inserted[next++] = c;
+                return c;
+            }
+        };
+
+        long acquiredBefore = Database.getWritePoolStats().acquired;
+        int committed = Batches.insert(SQL, source, commitSize, (ps, c) -> {
+            ps.setInt(1, c.getContatoId());
+            ps.setLong(2, DateTimeCodec.toEpoch(c.getDateTime()));
+            ps.setString(3, c.getLocal());
+            ps.setBoolean(4, c.isOnline());
+            ps.setString(5, c.getDescricao());
+        }, Compromisso::setId);
+
+        assertEquals(rows, committed);
+        assertEquals(0, busyReads[0], "linhas lidas com a conexão de escrita em uso");
+        assertEquals(3, Database.getWritePoolStats().acquired - acquiredBefore);
+        CompromissoDAO dao = new CompromissoDAO();
+        for (int i = 0; i < rows; i += 499) {
+            assertNotNull(inserted[i].getId());
+            assertEquals("lote " + i, dao.findById(inserted[i].getId()).getDescricao());
+        }
+    }
+}
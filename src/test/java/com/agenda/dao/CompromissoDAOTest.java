@@ -0,0 +1,81 @@
+package com.agenda.dao;
+
+import com.agenda.model.Compromisso;
+import com.agenda.model.Recorrencia;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompromissoDAOTest {
+    private static CompromissoDAO dao;
+
+    @BeforeAll
+    static void useTestDatabase() {
+        TestDatabase.use();
+        dao = new CompromissoDAO();
+    }
+
+    @Test
+    void insertAndUpdateWriteTheRuleWithTheRow() {
+        Compromisso c = new Compromisso(1, LocalDateTime.of(2700, 3, 2, 9, 0), "Sala", false, "série");
+        Recorrencia semanal = new Recorrencia(Recorrencia.Frequencia.SEMANAL, 1, 4, null);
+        assertTrue(dao.insert(c, semanal));
+        assertNotNull(c.getId());
+        assertEquals(Recorrencia.Frequencia.SEMANAL, dao.findRecorrencia(c.getId()).getFrequencia());
+
+        c.setDescricao("avulso");
+        assertTrue(dao.update(c, null));
+        assertNull(dao.findRecorrencia(c.getId()));
+        assertEquals("avulso", dao.findById(c.getId()).getDescricao());
+    }
+
+    /** Se a regra não puder ser gravada, o compromisso também não é. */
+    @Test
+    void failedRuleRollsBackTheRow() throws Exception {
+        exec("CREATE TRIGGER teste_regra_invalida BEFORE INSERT ON recorrencias WHEN NEW.intervalo = 99 "
+                + "BEGIN SELECT RAISE(ABORT, 'regra inválida'); END");
+        try {
+            Compromisso c = new Compromisso(1, LocalDateTime.of(2700, 4, 1, 9, 0), "Sala", false, "não gravado");
+            assertFalse(dao.insert(c, new Recorrencia(Recorrencia.Frequencia.DIARIA, 99, null, null)));
+            assertNull(c.getId());
+            assertEquals(0, countByDescricao("não gravado"));
+
+            Compromisso d = new Compromisso(1, LocalDateTime.of(2700, 4, 2, 9, 0), "Sala", false, "antes");
+            assertTrue(dao.insert(d));
+            d.setDescricao("depois");
+            assertFalse(dao.update(d, new Recorrencia(Recorrencia.Frequencia.DIARIA, 99, null, null)));
+            assertEquals(1, countByDescricao("antes"));
+            assertNull(dao.findRecorrencia(d.getId()));
+        } finally {
+            exec("DROP TRIGGER teste_regra_invalida");
+        }
+    }
+
+    private static void exec(String sql) throws Exception {
+        try (Connection conn = Database.getConnection(); Statement s = conn.createStatement()) {
+            s.executeUpdate(sql);
+        }
+    }
+
+    private static int countByDescricao(String descricao) throws Exception {
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT count(*) FROM compromissos WHERE descricao = ?")) {
+            ps.setString(1, descricao);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
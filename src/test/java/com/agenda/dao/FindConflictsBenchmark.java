@@ -0,0 +1,96 @@
+package com.agenda.dao;
+
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompromissoDAO#findConflicts} em um banco temporário com {@code rows} compromissos
+ * ({@value #CONTATOS} contatos, {@value #LOCAIS} locais, metade online, espalhados por
+ * {@value #DAYS} dias). Cada chamada testa um horário, contato e local sorteados. Rodar pelo
+ * classpath de testes: {@code org.openjdk.jmh.Main FindConflictsBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindConflictsBenchmark {
+    private static final int CONTATOS = 1000;
+    private static final int LOCAIS = 200;
+    private static final int DAYS = 3 * 365;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Param("1000000")
+    int rows;
+
+    private CompromissoDAO dao;
+    private int[] contatoIds;
+    private final Random probes = new Random(1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TestDatabase.use();
+        dao = new CompromissoDAO();
+        List<Contato> contatos = new ArrayList<>(CONTATOS);
+        for (int i = 0; i < CONTATOS; i++) contatos.add(new Contato(null, "Bench " + i, "bench" + i + "@example.com", null));
+        if (new ContatoDAO().insertBatched(contatos.iterator(), CONTATOS) != CONTATOS) throw new IllegalStateException("contatos não gravados");
+        contatoIds = new int[CONTATOS];
+        for (int i = 0; i < CONTATOS; i++) contatoIds[i] = contatos.get(i).getId();
+
+        Random r = new Random(42);
+        Iterator<Compromisso> seed = new Iterator<>() {
+            int n;
+
+            @Override
+            public boolean hasNext() {
+                return n < rows;
+            }
+
+            @Override
+            public Compromisso next() {
+                n++;
+                return random(r);
+            }
+        };
+        if (dao.insertBatched(seed, 50_000) != rows) throw new IllegalStateException("seed incompleto");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    @Benchmark
+    public List<Compromisso> findConflicts() {
+        return dao.findConflicts(random(probes));
+    }
+
+    private Compromisso random(Random r) {
+        // minute resolution: a 60 min slot overlaps a handful of rows of the same contato or local
+        LocalDateTime when = START.plusMinutes(r.nextInt(DAYS * 24 * 60));
+        boolean online = r.nextBoolean();
+        String local = online ? "https://meet.example.com/" + r.nextInt(LOCAIS) : "Sala " + r.nextInt(LOCAIS);
+        return new Compromisso(contatoIds[r.nextInt(CONTATOS)], when, local, online, null);
+    }
+}
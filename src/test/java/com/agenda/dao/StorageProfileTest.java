@@ -0,0 +1,184 @@
+package com.agenda.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Leitores e escritor concorrentes com o mesmo modelo de acesso do {@link Database} (um escritor
+ * serializado, {@value #READERS} leitores somente-leitura), para cada {@link StorageProfile}.
+ * A vazão de leituras e escritas de cada perfil é impressa ao final.
+ */
+class StorageProfileTest {
+    private static final int READERS = 4;
+    private static final int CONTATOS = 50;
+    private static final int SEED_ROWS = 20_000;
+    private static final long RUN_MILLIS = Long.getLong("agenda.test.runMillis", 2000L);
+
+    @TempDir
+    Path dir;
+
+    static List<StorageProfile> profiles() {
+        return List.of(StorageProfile.LEGACY, StorageProfile.WAL);
+    }
+
+    @ParameterizedTest
+    @MethodSource("profiles")
+    void readersAndWriterRunConcurrently(StorageProfile profile) throws Exception {
+        String url = "jdbc:sqlite:" + dir.resolve(profile.getName() + ".db");
+        ConnectionPool writer = new ConnectionPool(url, 1, 10_000, profile.connectionPragmas(true));
+        ConnectionPool readers = new ConnectionPool(url, READERS, 10_000, profile.connectionPragmas(false));
+        try {
+            createSchema(writer);
+
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong writes = new AtomicLong();
+            AtomicLong reads = new AtomicLong();
+            Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            CountDownLatch done = new CountDownLatch(READERS + 1);
+
+            Thread w = new Thread(() -> {
+                try {
+                    int i = 0;
+                    while (!stop.get()) {
+                        write(writer, i++);
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    errors.add(t);
+                } finally {
+                    done.countDown();
+                }
+            }, "writer");
+            w.start();
+            for (int r = 0; r < READERS; r++) {
+                int seed = r;
+                new Thread(() -> {
+                    try {
+                        int i = seed;
+                        while (!stop.get()) {
+                            read(readers, 1 + (i++ % CONTATOS));
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "reader-" + r).start();
+            }
+
+            Thread.sleep(RUN_MILLIS);
+            stop.set(true);
+            done.await();
+
+            double seconds = RUN_MILLIS / 1000.0;
+            System.out.printf("%s: %.0f escritas/s, %.0f leituras/s (%d leitores)%n",
+                    profile, writes.get() / seconds, reads.get() / seconds, READERS);
+            assertTrue(errors.isEmpty(), () -> "falhas: " + errors);
+            assertTrue(writes.get() > 0, "o escritor não gravou nada");
+            assertTrue(reads.get() > 0, "os leitores não leram nada");
+            assertEquals(SEED_ROWS + writes.get(), count(readers));
+        } finally {
+            readers.shutdown();
+            writer.shutdown();
+        }
+    }
+
+    /** Em WAL, uma transação de escrita aberta não impede a leitura (que vê o último commit). */
+    @Test
+    void walReadersDoNotWaitForOpenWriteTransaction() throws Exception {
+        StorageProfile profile = StorageProfile.WAL;
+        String url = "jdbc:sqlite:" + dir.resolve("open-tx.db");
+        ConnectionPool writer = new ConnectionPool(url, 1, 10_000, profile.connectionPragmas(true));
+        ConnectionPool readers = new ConnectionPool(url, READERS, 10_000, profile.connectionPragmas(false));
+        try {
+            createSchema(writer);
+            try (Connection conn = writer.acquire()) {
+                conn.setAutoCommit(false);
+                try (Statement s = conn.createStatement()) {
+                    s.executeUpdate("INSERT INTO compromissos (contato_id, datetime, local, online) VALUES (1, 0, 'x', 0)");
+                }
+                long start = System.nanoTime();
+                assertEquals(SEED_ROWS, count(readers));
+                long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+                assertTrue(waitedMillis < profile.getBusyTimeoutMillis(), "leitura esperou " + waitedMillis + " ms");
+                conn.commit();
+            }
+            assertEquals(SEED_ROWS + 1, count(readers));
+        } finally {
+            readers.shutdown();
+            writer.shutdown();
+        }
+    }
+
+    // same shape as compromissos (with the contato/datetime index) so the queries match the DAO's
+    private static void createSchema(ConnectionPool writer) throws SQLException {
+        try (Connection conn = writer.acquire(); Statement s = conn.createStatement()) {
+            s.executeUpdate("CREATE TABLE compromissos (id INTEGER PRIMARY KEY AUTOINCREMENT, contato_id INTEGER NOT NULL, "
+                    + "datetime INTEGER, local TEXT, online INTEGER DEFAULT 0, descricao TEXT)");
+            s.executeUpdate("CREATE INDEX idx_compromissos_contato_datetime ON compromissos(contato_id, datetime, id)");
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO compromissos (contato_id, datetime, local, online) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < SEED_ROWS; i++) {
+                    ps.setInt(1, 1 + i % CONTATOS);
+                    ps.setLong(2, 1_700_000_000L + i * 3600L);
+                    ps.setString(3, "Sala " + i % 10);
+                    ps.setBoolean(4, i % 2 == 0);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    // one transaction per write, like CompromissoDAO.insert
+    private static void write(ConnectionPool writer, int i) throws SQLException {
+        try (Connection conn = writer.acquire(); PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO compromissos (contato_id, datetime, local, online) VALUES (?, ?, ?, ?)")) {
+            ps.setInt(1, 1 + i % CONTATOS);
+            ps.setLong(2, 1_800_000_000L + i * 60L);
+            ps.setString(3, "Sala");
+            ps.setBoolean(4, false);
+            ps.executeUpdate();
+        }
+    }
+
+    // like CompromissoDAO.findByContatoId
+    private static void read(ConnectionPool readers, int contatoId) throws SQLException {
+        try (Connection conn = readers.acquire(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, contato_id, datetime, local, online, descricao FROM compromissos WHERE contato_id = ? ORDER BY datetime")) {
+            ps.setInt(1, contatoId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rs.getLong(3);
+            }
+        }
+    }
+
+    private static long count(ConnectionPool readers) throws SQLException {
+        try (Connection conn = readers.acquire(); Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT count(*) FROM compromissos")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
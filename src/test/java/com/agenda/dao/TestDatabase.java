@@ -0,0 +1,28 @@
+package com.agenda.dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Aponta o {@link Database} para um arquivo em um diretório temporário (propriedade
+ * {@code agenda.db.path}), com um tempo de espera do pool menor. Chamar antes do primeiro uso de um DAO; todas as classes de teste da
+ * mesma JVM compartilham o banco.
+ */
+public final class TestDatabase {
+    private TestDatabase() {
+    }
+
+    public static synchronized void use() {
+        if (System.getProperty("agenda.db.path") != null) return;
+        try {
+            Path dir = Files.createTempDirectory("agenda-test");
+            System.setProperty("agenda.db.path", dir.resolve("agenda.db").toString());
+            // tests that hold a connection on purpose should not wait the default 10 s
+            System.setProperty("agenda.db.poolTimeoutMs", "2000");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.agenda.dao;
+
+import com.agenda.model.Compromisso;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindBufferTest {
+    // só a descrição, para o teste não depender das demais colunas
+    private static final WriteBehindBuffer.Table<Compromisso> TABLE = new WriteBehindBuffer.Table<>("compromissos",
+            "UPDATE compromissos SET descricao = ? WHERE id = ?", (ps, c) -> {
+        ps.setString(1, c.getDescricao());
+        ps.setInt(2, c.getId());
+    }, "DELETE FROM compromissos WHERE id = ?");
+
+    private static CompromissoDAO dao;
+
+    @BeforeAll
+    static void useTestDatabase() {
+        TestDatabase.use();
+        dao = new CompromissoDAO();
+    }
+
+    /** Sem conexão de escrita o lote volta para o buffer, sem sobrescrever o que chegou depois. */
+    @Test
+    void batchIsKeptWhenTheWriterIsUnavailable() throws Exception {
+        Compromisso c = insert("original");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(60_000, 1000);
+        try {
+            buffer.update(TABLE, c.getId(), withDescricao(c, "primeira"));
+
+            CountDownLatch holding = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+                try (Connection conn = Database.getConnection()) {
+                    holding.countDown();
+                    done.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(holding.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> flush = CompletableFuture.supplyAsync(buffer::sync);
+            // arrives while the flush waits for the writer
+            Thread.sleep(300);
+            buffer.update(TABLE, c.getId(), withDescricao(c, "segunda"));
+            assertFalse(flush.get(10, TimeUnit.SECONDS));
+            assertTrue(buffer.hasPending());
+            done.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+
+            assertTrue(buffer.sync());
+            assertEquals("segunda", descricao(c.getId()));
+            assertEquals(0, buffer.stats().failedRows);
+        } finally {
+            buffer.shutdown();
+        }
+    }
+
+    /** Dentro de uma seção de escrita o sync não espera pela própria conexão. */
+    @Test
+    void syncInsideWriterSectionDoesNotWaitForItself() throws Exception {
+        Compromisso c = insert("original");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(60_000, 1000);
+        try {
+            buffer.update(TABLE, c.getId(), withDescricao(c, "alterada"));
+            try (Connection conn = Database.getConnection()) {
+                long start = System.nanoTime();
+                assertFalse(buffer.sync());
+                assertTrue((System.nanoTime() - start) / 1_000_000 < 500, "sync esperou pela conexão de escrita");
+                assertTrue(buffer.hasPending());
+            }
+            assertTrue(buffer.sync());
+            assertEquals("alterada", descricao(c.getId()));
+        } finally {
+            buffer.shutdown();
+        }
+    }
+
+    private static Compromisso insert(String descricao) {
+        Compromisso c = new Compromisso(1, LocalDateTime.of(2600, 1, 1, 8, 0), "Sala", false, descricao);
+        assertTrue(dao.insert(c));
+        return c;
+    }
+
+    private static Compromisso withDescricao(Compromisso c, String descricao) {
+        return new Compromisso(c.getId(), c.getContatoId(), c.getDateTime(), c.getLocal(), c.isOnline(), descricao);
+    }
+
+    // straight from the database, bypassing the DAO cache
+    private static String descricao(int id) throws Exception {
+        try (Connection conn = Database.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT descricao FROM compromissos WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+}
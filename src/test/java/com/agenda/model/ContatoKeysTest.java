@@ -0,0 +1,46 @@
+package com.agenda.model;
+
+import com.agenda.validation.DuplicateContatoIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContatoKeysTest {
+    @Test
+    void nomeIgnoresAccentCaseAndWhitespace() {
+        assertEquals("álvaro souza", ContatoKeys.nome("Álvaro Souza"));
+        assertEquals("álvaro souza", ContatoKeys.nome("\tálvaro \n  SOUZA "));
+        // decomposed "A" + combining acute accent is the same name
+        assertEquals("álvaro", ContatoKeys.nome("A\u0301lvaro"));
+        assertEquals("", ContatoKeys.nome(" \t "));
+        assertEquals("", ContatoKeys.nome(null));
+    }
+
+    @Test
+    void emailIsTrimmedAndLowerCased() {
+        assertEquals("édu@x.com", ContatoKeys.email(" ÉDU@x.com "));
+        assertEquals("", ContatoKeys.email(null));
+    }
+
+    @Test
+    void telefoneKeepsOnlyDigits() {
+        assertEquals("1133334444", ContatoKeys.telefone("(11) 3333-4444"));
+        assertEquals("1133334444", ContatoKeys.telefone("11/3333.4444"));
+        assertEquals("1133334444", ContatoKeys.telefone("1133334444"));
+        assertEquals("", ContatoKeys.telefone("-"));
+    }
+
+    @Test
+    void duplicateIndexUsesTheSameKeys() {
+        DuplicateContatoIndex index = new DuplicateContatoIndex();
+        index.put(new Contato(1, "Álvaro Souza", null, null));
+        index.put(new Contato(2, "Bia", "bia@x.com", "11/3333-4444"));
+
+        assertTrue(index.isDuplicate(null, "álvaro\tsouza", "", ""));
+        assertTrue(index.isDuplicate(null, "Outra", "", "(11) 3333 4444"));
+        assertTrue(index.isDuplicate(null, "Outra", " BIA@X.COM", ""));
+        assertFalse(index.isDuplicate(2, "Bia", "bia@x.com", "1133334444"));
+    }
+}
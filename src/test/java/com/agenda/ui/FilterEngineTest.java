@@ -0,0 +1,124 @@
+package com.agenda.ui;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link FilterEngine.Patch} tem que deixar o resultado igual ao da aplicação item a item (indexOf
+ * e remove na própria lista), que era feita na thread de UI.
+ */
+class FilterEngineTest {
+    // identity equality, like Contato
+    private static final class Item {
+        final int key;
+        boolean visible = true;
+
+        Item(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public String toString() {
+            return key + (visible ? "" : "-");
+        }
+    }
+
+    private static final class VisibleFilter implements FilterEngine.Filter<Item> {
+        private final boolean ordered;
+
+        VisibleFilter(boolean ordered) {
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean test(Item item) {
+            return item.visible;
+        }
+
+        @Override
+        public boolean narrows(FilterEngine.Filter<Item> previous) {
+            return false;
+        }
+
+        @Override
+        public Comparator<? super Item> order() {
+            return ordered ? Comparator.comparingInt(i -> i.key) : null;
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void patchMatchesItemByItemUpdate(boolean ordered) {
+        Random r = new Random(7);
+        VisibleFilter filter = new VisibleFilter(ordered);
+        for (int round = 0; round < 500; round++) {
+            // distinct keys, so the position of a new item in the order is unambiguous
+            List<Integer> keys = new ArrayList<>();
+            for (int k = 0; k < 400; k++) keys.add(k);
+            Collections.shuffle(keys, r);
+            int next = 0;
+
+            List<Item> base = new ArrayList<>();
+            for (int k = 0; k < 50 + r.nextInt(150); k++) base.add(new Item(keys.get(next++)));
+            if (ordered) base.sort(filter.order());
+
+            List<Item> removed = new ArrayList<>();
+            List<Item> added = new ArrayList<>();
+            for (int k = 0; k < r.nextInt(20); k++) {
+                Item existing = base.get(r.nextInt(base.size()));
+                switch (r.nextInt(4)) {
+                    case 0 -> removed.add(existing);
+                    case 1 -> {
+                        // replaced by itself, possibly no longer accepted
+                        existing.visible = r.nextBoolean();
+                        removed.add(existing);
+                        added.add(existing);
+                    }
+                    case 2 -> {
+                        existing.visible = r.nextBoolean();
+                        added.add(existing);
+                    }
+                    default -> {
+                        Item fresh = new Item(keys.get(next++));
+                        fresh.visible = r.nextInt(4) > 0;
+                        added.add(fresh);
+                    }
+                }
+            }
+
+            List<Item> expected = new ArrayList<>(base);
+            itemByItem(expected, removed, added, filter);
+            List<Item> actual = new ArrayList<>(base);
+            FilterEngine.Patch.of(base, removed, added, filter).applyTo(actual);
+            assertEquals(expected, actual, "rodada " + round);
+        }
+    }
+
+    // the patch as it used to run on the FX thread
+    private static void itemByItem(List<Item> result, List<Item> removed, List<Item> added, VisibleFilter filter) {
+        for (Item item : removed) {
+            if (!added.contains(item)) result.remove(item);
+        }
+        for (Item item : added) {
+            int i = result.indexOf(item);
+            if (!filter.test(item)) {
+                if (i >= 0) result.remove(i);
+            } else if (i >= 0) {
+                result.set(i, item);
+            } else if (filter.order() != null) {
+                int pos = Collections.binarySearch(result, item, filter.order());
+                result.add(pos < 0 ? -pos - 1 : pos, item);
+            } else {
+                result.add(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.TestDatabase;
+import com.agenda.model.Compromisso;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A exportação paralela tem que gerar o mesmo arquivo, byte a byte, que a sequencial, inclusive
+ * com escritas no banco durante a exportação.
+ */
+class CompromissoCsvExporterTest {
+    private static final int ROWS = 6_000;
+    private static final int CHUNK_ROWS = 500;
+
+    private static CompromissoDAO dao;
+    private static Compromisso last;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void seed() {
+        TestDatabase.use();
+        dao = new CompromissoDAO();
+        LocalDateTime start = LocalDateTime.of(2400, 1, 1, 8, 0);
+        List<Compromisso> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            // fields that need quoting, multi-byte text and empty values
+            String local = switch (i % 4) {
+                case 0 -> "Sala " + i + ", bloco B";
+                case 1 -> null;
+                case 2 -> "Café ☕ \"térreo\"";
+                default -> "Sala " + i;
+            };
+            String descricao = i % 7 == 0 ? "linha 1\nlinha 2 😀" : "Reunião " + i;
+            // repeated datetimes: the (datetime, id) order has to hold across chunk edges
+            rows.add(new Compromisso(1 + i % 3, start.plusMinutes(30L * (i / 3)), local, i % 5 == 0, descricao));
+        }
+        assertTrue(dao.insertAll(rows));
+        last = rows.get(ROWS - 1);
+    }
+
+    @Test
+    void parallelMatchesSequential() throws Exception {
+        Path sequential = dir.resolve("seq.csv");
+        Path parallel = dir.resolve("par.csv");
+        assertTrue(CompromissoCsvExporter.export(dao, sequential.toFile(), ExportProgress.NONE));
+        assertTrue(CompromissoCsvExporter.exportParallel(dao, parallel.toFile(), 3, CHUNK_ROWS, ExportProgress.NONE));
+        assertEquals(-1, Files.mismatch(sequential, parallel));
+    }
+
+    @Test
+    void writesDuringExportAreNotSeen() throws Exception {
+        Path before = dir.resolve("before.csv");
+        Path parallel = dir.resolve("par.csv");
+        Path after = dir.resolve("after.csv");
+        assertTrue(CompromissoCsvExporter.export(dao, before.toFile(), ExportProgress.NONE));
+
+        Compromisso first = new Compromisso(1, LocalDateTime.of(1990, 1, 1, 9, 0), "Sala", false, "inserido durante a exportação");
+        boolean[] changed = {false};
+        ExportProgress progress = new ExportProgress() {
+            @Override
+            public void update(long rows, long total) {
+                // first chunks already read: add a row before them and remove the last row, not read yet
+                if (changed[0]) return;
+                changed[0] = true;
+                assertTrue(dao.insert(first));
+                assertTrue(dao.delete(last.getId()));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        try {
+            assertTrue(CompromissoCsvExporter.exportParallel(dao, parallel.toFile(), 2, CHUNK_ROWS, progress));
+            assertTrue(changed[0]);
+            assertEquals(-1, Files.mismatch(before, parallel));
+
+            assertTrue(CompromissoCsvExporter.export(dao, after.toFile(), ExportProgress.NONE));
+            assertNotEquals(-1, Files.mismatch(before, after));
+        } finally {
+            if (first.getId() != null) dao.delete(first.getId());
+            last.setId(null);
+            if (changed[0]) dao.insert(last);
+        }
+    }
+}
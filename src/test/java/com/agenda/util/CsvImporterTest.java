@@ -0,0 +1,139 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.dao.Database;
+import com.agenda.dao.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Linhas que o banco recusa vão para o arquivo de rejeitados, uma gravação que não pode continuar
+ * aparece no resultado em vez de terminar como concluída, e o contato_id de um compromisso só vale
+ * para contatos importados junto.
+ */
+class CsvImporterTest {
+    private static ContatoDAO contatoDao;
+    private static CompromissoDAO compDao;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void useTestDatabase() {
+        TestDatabase.use();
+        contatoDao = new ContatoDAO();
+        compDao = new CompromissoDAO();
+    }
+
+    @Test
+    void rowsRefusedByTheDatabaseAreRejectedWithTheReason() throws Exception {
+        exec("CREATE TRIGGER teste_importacao_recusa BEFORE INSERT ON contatos WHEN NEW.nome = 'Recusado' "
+                + "BEGIN SELECT RAISE(ABORT, 'recusado pelo banco'); END");
+        try {
+            File csv = write("recusa.csv", "id,nome,email,telefone",
+                    "1,Importado Um,imp1@example.com,", "2,Recusado,,", "3,Importado Tres,imp3@example.com,",
+                    "4,Importado Quatro,imp4@example.com,", "5,Importado Cinco,imp5@example.com,");
+            File rejects = CsvImporter.rejectsFileFor(csv);
+            CsvImporter.Result r = new CsvImporter(contatoDao, compDao, 2).importContatos(csv, rejects, ExportProgress.NONE);
+
+            assertNull(r.erro);
+            assertEquals(4, r.imported);
+            assertEquals(1, r.rejected);
+            List<String> lines = Files.readAllLines(rejects.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(1).startsWith("2,Recusado,,,"), lines.get(1));
+            assertTrue(lines.get(1).contains("recusado pelo banco"), lines.get(1));
+            assertEquals(4, contatoDao.search("Importado", 10).size());
+        } finally {
+            exec("DROP TRIGGER teste_importacao_recusa");
+        }
+    }
+
+    /** Sem a conexão de escrita o bloco vai para os rejeitados e o resultado traz o erro. */
+    @Test
+    void blockedWriterStopsTheImportWithAnError() throws Exception {
+        File csv = write("bloqueado.csv", "nome,email,telefone", "Bloqueado Um,,", "Bloqueado Dois,,", "Bloqueado Tres,,");
+        File rejects = CsvImporter.rejectsFileFor(csv);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (Connection conn = Database.getConnection()) {
+                held.countDown();
+                done.await();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        holder.start();
+        held.await();
+        CsvImporter.Result r;
+        try {
+            r = new CsvImporter(contatoDao, compDao, 2).importContatos(csv, rejects, ExportProgress.NONE);
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+
+        assertNotNull(r.erro);
+        assertEquals(0, r.imported);
+        // the first block is rejected; the third row was never read
+        assertEquals(2, r.rejected);
+        assertEquals(3, Files.readAllLines(rejects.toPath(), StandardCharsets.UTF_8).size());
+        assertEquals(0, contatoDao.search("Bloqueado", 10).size());
+    }
+
+    /** Um contato_id que não veio da mesma importação não é tomado como o contato com esse id aqui. */
+    @Test
+    void contatoIdsOnlyResolveThroughTheSameImport() throws Exception {
+        File contatos = write("agenda-contatos.csv", "id,nome,email,telefone", "901,Origem Um,origem1@example.com,");
+        File comps = write("agenda-compromissos.csv", "id,contato_id,contato_nome,datetime,local,online,descricao",
+                "1,901,Origem Um,2800-01-01T09:00,Sala,false,origem", "2,1,Outro,2800-01-01T10:00,Sala,false,origem");
+
+        // alone, raw ids are rejected even though contato 1 exists in this database
+        CsvImporter.Result alone = new CsvImporter(contatoDao, compDao).importCompromissos(comps, null, ExportProgress.NONE);
+        assertEquals(0, alone.imported);
+        assertEquals(2, alone.rejected);
+
+        CsvImporter.Result both = new CsvImporter(contatoDao, compDao).importAgenda(contatos, comps, ExportProgress.NONE);
+        assertNull(both.erro);
+        assertEquals(2, both.imported);
+        assertEquals(1, both.rejected);
+        int novo = contatoDao.search("Origem", 10).get(0).getId();
+        assertEquals(1, compDao.count(null, null, novo));
+
+        // same database: the caller vouches for the ids
+        CsvImporter same = new CsvImporter(contatoDao, compDao);
+        same.setUseExistingContatoIds(true);
+        CsvImporter.Result r = same.importCompromissos(comps, null, ExportProgress.NONE);
+        assertEquals(1, r.imported);
+        assertEquals(1, r.rejected);
+    }
+
+    private File write(String name, String... lines) throws Exception {
+        Path file = dir.resolve(name);
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+
+    private static void exec(String sql) throws Exception {
+        try (Connection conn = Database.getConnection(); Statement s = conn.createStatement()) {
+            s.executeUpdate(sql);
+        }
+    }
+}
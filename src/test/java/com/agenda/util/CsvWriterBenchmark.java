@@ -0,0 +1,135 @@
+package com.agenda.util;
+
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o {@link CsvWriter} com a escrita dos exportadores antes dele ({@code csvEscape} por campo,
+ * ids e booleanos convertidos em String), nas mesmas linhas e para um Writer que descarta a saída,
+ * para medir só a formatação. Rodar pelo classpath de testes: {@code org.openjdk.jmh.Main CsvWriterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvWriterBenchmark {
+    @Param("1000000")
+    int rows;
+
+    private List<Compromisso> compromissos;
+    private List<String> nomes;
+    private List<Contato> contatos;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        compromissos = new ArrayList<>(rows);
+        nomes = new ArrayList<>(rows);
+        contatos = new ArrayList<>(rows);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0);
+        for (int i = 0; i < rows; i++) {
+            // about one field in ten needs quoting, as in real agendas
+            String local = r.nextInt(10) == 0 ? "Sala " + i + ", bloco B" : "Sala " + i;
+            String descricao = r.nextInt(10) == 0 ? "Reunião \"importante\"\nlevar relatório" : "Reunião de acompanhamento " + i;
+            compromissos.add(new Compromisso(i + 1, 1 + r.nextInt(5000), start.plusMinutes(30L * i), local, r.nextBoolean(), descricao));
+            nomes.add("Contato " + r.nextInt(5000));
+            contatos.add(new Contato(i + 1, "Contato " + i, "contato" + i + "@example.com", "+55 11 9" + (10_000_000 + i)));
+        }
+    }
+
+    @Benchmark
+    public void compromissosCsvWriter() throws IOException {
+        try (CsvWriter w = new CsvWriter(Writer.nullWriter())) {
+            w.raw(CompromissoCsvExporter.HEADER);
+            for (int i = 0; i < rows; i++) {
+                Compromisso c = compromissos.get(i);
+                w.field(c.getId()).field(c.getContatoId()).field(nomes.get(i)).field(c.getDateTime())
+                        .field(c.getLocal()).field(c.isOnline()).field(c.getDescricao()).endRow();
+            }
+        }
+    }
+
+    @Benchmark
+    public void compromissosLegacy() throws IOException {
+        try (Writer w = new BufferedWriter(Writer.nullWriter())) {
+            w.write(CompromissoCsvExporter.HEADER);
+            w.write(System.lineSeparator());
+            for (int i = 0; i < rows; i++) {
+                Compromisso c = compromissos.get(i);
+                w.write(csvEscape(c.getId() == null ? "" : c.getId().toString()));
+                w.write(',');
+                w.write(csvEscape(c.getContatoId() == null ? "" : c.getContatoId().toString()));
+                w.write(',');
+                w.write(csvEscape(nomes.get(i)));
+                w.write(',');
+                w.write(csvEscape(c.getDateTime() == null ? "" : c.getDateTime().toString()));
+                w.write(',');
+                w.write(csvEscape(c.getLocal()));
+                w.write(',');
+                w.write(csvEscape(Boolean.toString(c.isOnline())));
+                w.write(',');
+                w.write(csvEscape(c.getDescricao()));
+                w.write(System.lineSeparator());
+            }
+        }
+    }
+
+    @Benchmark
+    public void contatosCsvWriter() throws IOException {
+        try (CsvWriter w = new CsvWriter(Writer.nullWriter())) {
+            w.raw("id,nome,email,telefone");
+            for (Contato c : contatos) {
+                w.field(c.getId()).field(c.getNome()).field(c.getEmail()).field(c.getTelefone()).endRow();
+            }
+        }
+    }
+
+    @Benchmark
+    public void contatosLegacy() throws IOException {
+        try (Writer w = new BufferedWriter(Writer.nullWriter())) {
+            w.write("id,nome,email,telefone");
+            w.write(System.lineSeparator());
+            for (Contato c : contatos) {
+                w.write(csvEscape(c.getId() == null ? "" : c.getId().toString()));
+                w.write(',');
+                w.write(csvEscape(c.getNome()));
+                w.write(',');
+                w.write(csvEscape(c.getEmail()));
+                w.write(',');
+                w.write(csvEscape(c.getTelefone()));
+                w.write(System.lineSeparator());
+            }
+        }
+    }
+
+    // csvEscape as it was in CsvExporter and CompromissoCsvExporter before CsvWriter
+    private static String csvEscape(String s) {
+        if (s == null) return "";
+        boolean needQuotes = s.contains(",") || s.contains("\"") || s.contains("\n") || s.contains("\r");
+        String escaped = s.replace("\"", "\"\"");
+        if (needQuotes) return "\"" + escaped + "\"";
+        return escaped;
+    }
+}
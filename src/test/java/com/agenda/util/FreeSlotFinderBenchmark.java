@@ -0,0 +1,113 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.dao.Database;
+import com.agenda.dao.TestDatabase;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import com.agenda.model.Recorrencia;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FreeSlotFinder#find} em um banco temporário com {@code rows} compromissos de
+ * {@value #CONTATOS} contatos espalhados por {@value #DAYS} dias, mais {@value #SERIES} séries
+ * semanais. Cada chamada procura horários de 30 min no expediente de {@code contatos} contatos
+ * sorteados, em uma janela de {@value #WINDOW_DAYS} dias. Rodar pelo classpath de testes:
+ * {@code org.openjdk.jmh.Main FreeSlotFinderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FreeSlotFinderBenchmark {
+    private static final int CONTATOS = 300;
+    private static final int SERIES = 100;
+    private static final int DAYS = 365;
+    private static final int WINDOW_DAYS = 90;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final FreeSlotFinder.Expediente EXPEDIENTE = FreeSlotFinder.Expediente.diasUteis(LocalTime.of(9, 0), LocalTime.of(18, 0));
+
+    @Param("200000")
+    int rows;
+
+    @Param({"5", "300"})
+    int contatos;
+
+    private FreeSlotFinder finder;
+    private int[] contatoIds;
+    private final Random probes = new Random(1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TestDatabase.use();
+        CompromissoDAO dao = new CompromissoDAO();
+        List<Contato> seeded = new ArrayList<>(CONTATOS);
+        for (int i = 0; i < CONTATOS; i++) seeded.add(new Contato(null, "Livre " + i, "livre" + i + "@example.com", null));
+        if (new ContatoDAO().insertBatched(seeded.iterator(), CONTATOS) != CONTATOS) throw new IllegalStateException("contatos não gravados");
+        contatoIds = new int[CONTATOS];
+        for (int i = 0; i < CONTATOS; i++) contatoIds[i] = seeded.get(i).getId();
+
+        Random r = new Random(42);
+        Iterator<Compromisso> seed = new Iterator<>() {
+            int n;
+
+            @Override
+            public boolean hasNext() {
+                return n < rows;
+            }
+
+            @Override
+            public Compromisso next() {
+                n++;
+                // on the quarter hour, like real bookings
+                LocalDateTime when = START.plusMinutes(15L * r.nextInt(DAYS * 24 * 4));
+                return new Compromisso(contatoIds[r.nextInt(CONTATOS)], when, "Sala " + r.nextInt(50), false, null);
+            }
+        };
+        if (dao.insertBatched(seed, 50_000) != rows) throw new IllegalStateException("seed incompleto");
+        for (int i = 0; i < SERIES; i++) {
+            Compromisso c = new Compromisso(contatoIds[r.nextInt(CONTATOS)], START.plusHours(9 + r.nextInt(8)).plusDays(r.nextInt(7)),
+                    "Sala fixa", false, null);
+            if (!dao.insert(c, new Recorrencia(Recorrencia.Frequencia.SEMANAL, 1, null, null))) throw new IllegalStateException("série não gravada");
+        }
+        finder = new FreeSlotFinder(dao);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Database.shutdown();
+    }
+
+    @Benchmark
+    public List<FreeSlotFinder.Intervalo> find() {
+        List<Integer> ids = new ArrayList<>(contatos);
+        int first = probes.nextInt(CONTATOS);
+        for (int i = 0; i < contatos; i++) ids.add(contatoIds[(first + i) % CONTATOS]);
+        LocalDateTime from = START.plusDays(probes.nextInt(DAYS - WINDOW_DAYS));
+        return finder.find(ids, from, from.plusDays(WINDOW_DAYS), Duration.ofMinutes(30), EXPEDIENTE);
+    }
+}
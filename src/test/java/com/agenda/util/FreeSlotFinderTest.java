@@ -0,0 +1,122 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.ContatoDAO;
+import com.agenda.dao.Database;
+import com.agenda.dao.TestDatabase;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Contato;
+import com.agenda.model.Recorrencia;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Horários livres de dois contatos em um dia do ano 3000, com compromissos avulsos, uma série diária
+ * e um compromisso de um terceiro contato que não deve contar; e sem acesso ao banco, um erro.
+ */
+class FreeSlotFinderTest {
+    private static final LocalDateTime DIA = LocalDateTime.of(3000, 1, 6, 0, 0);
+
+    private static ContatoDAO contatoDao;
+    private static final List<Integer> contatos = new ArrayList<>();
+
+    @BeforeAll
+    static void seed() {
+        TestDatabase.use();
+        contatoDao = new ContatoDAO();
+        CompromissoDAO dao = new CompromissoDAO();
+        for (int i = 0; i < 3; i++) {
+            Contato c = new Contato("Livre " + i, "livre" + i + "@example.com", null);
+            assertTrue(contatoDao.insert(c));
+            contatos.add(c.getId());
+        }
+        int a = contatos.get(0), b = contatos.get(1), outro = contatos.get(2);
+        // started before the window, still busy at 08:00
+        insert(dao, a, DIA.withHour(7).withMinute(30), null);
+        insert(dao, a, DIA.withHour(9), null);
+        insert(dao, b, DIA.withHour(9).withMinute(30), null);
+        insert(dao, a, DIA.withHour(13), null);
+        insert(dao, b, DIA.minusDays(1).withHour(15), new Recorrencia(Recorrencia.Frequencia.DIARIA, 1, null, null));
+        insert(dao, outro, DIA.withHour(11), null);
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        // compromissos go with their contato
+        assertTrue(contatoDao.deleteAll(contatos));
+    }
+
+    @Test
+    void gapsBetweenTheMergedSchedules() {
+        FreeSlotFinder finder = new FreeSlotFinder(new CompromissoDAO());
+        List<FreeSlotFinder.Intervalo> livres = finder.find(contatos.subList(0, 2), DIA.withHour(8), DIA.withHour(18),
+                Duration.ofMinutes(30), null);
+        assertEquals(List.of(
+                DIA.withHour(8).withMinute(30) + " - " + DIA.withHour(9),
+                DIA.withHour(10).withMinute(30) + " - " + DIA.withHour(13),
+                DIA.withHour(14) + " - " + DIA.withHour(15),
+                DIA.withHour(16) + " - " + DIA.withHour(18)), strings(livres));
+    }
+
+    @Test
+    void shortGapsAndEmptyWindow() {
+        FreeSlotFinder finder = new FreeSlotFinder(new CompromissoDAO());
+        List<FreeSlotFinder.Intervalo> livres = finder.find(contatos.subList(0, 2), DIA.withHour(8), DIA.withHour(18),
+                Duration.ofMinutes(45), null);
+        assertEquals(3, livres.size());
+        assertEquals(List.of(DIA.withHour(8) + " - " + DIA.withHour(9)),
+                strings(finder.find(List.of(contatos.get(2)), DIA.withHour(8), DIA.withHour(9), Duration.ZERO, null)));
+    }
+
+    /** Um erro de leitura não pode virar "todos disponíveis". */
+    @Test
+    void databaseErrorIsNotReportedAsFree() throws Exception {
+        FreeSlotFinder finder = new FreeSlotFinder(new CompromissoDAO());
+        int readers = Database.getReadPoolStats().maxSize;
+        CountDownLatch held = new CountDownLatch(readers);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> holders = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            Thread t = new Thread(() -> {
+                try (Connection conn = Database.getReadConnection()) {
+                    held.countDown();
+                    done.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            t.start();
+            holders.add(t);
+        }
+        held.await();
+        try {
+            assertThrows(IllegalStateException.class, () -> finder.find(contatos.subList(0, 2), DIA.withHour(8),
+                    DIA.withHour(18), Duration.ofMinutes(30), null));
+        } finally {
+            done.countDown();
+            for (Thread t : holders) t.join();
+        }
+    }
+
+    private static List<String> strings(List<FreeSlotFinder.Intervalo> livres) {
+        List<String> s = new ArrayList<>();
+        for (FreeSlotFinder.Intervalo i : livres) s.add(i.toString());
+        return s;
+    }
+
+    private static void insert(CompromissoDAO dao, int contatoId, LocalDateTime when, Recorrencia rule) {
+        assertTrue(dao.insert(new Compromisso(contatoId, when, "Sala", false, "livre"), rule));
+    }
+}
@@ -0,0 +1,173 @@
+package com.agenda.util;
+
+import com.agenda.dao.CompromissoDAO;
+import com.agenda.dao.TestDatabase;
+import com.agenda.model.Compromisso;
+import com.agenda.model.Recorrencia;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Agendador com relógio virtual: o teste avança o relógio e chama {@link ReminderScheduler#fireDue()}.
+ * Os compromissos ficam no ano 2900, longe dos dados das outras classes de teste.
+ */
+class ReminderSchedulerTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2900, 1, 1, 8, 0);
+
+    private static CompromissoDAO dao;
+
+    private VirtualClock clock;
+    private ReminderScheduler scheduler;
+    private final List<Compromisso> fired = new CopyOnWriteArrayList<>();
+    private final List<Integer> created = new ArrayList<>();
+
+    /** Relógio que só anda quando o teste manda. */
+    private static final class VirtualClock extends Clock {
+        private volatile Instant now;
+
+        VirtualClock(LocalDateTime start) {
+            now = start.toInstant(ZoneOffset.UTC);
+        }
+
+        void set(LocalDateTime t) {
+            now = t.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeAll
+    static void useTestDatabase() {
+        TestDatabase.use();
+        dao = new CompromissoDAO();
+    }
+
+    @BeforeEach
+    void startScheduler() {
+        clock = new VirtualClock(T0);
+        scheduler = new ReminderScheduler(dao, clock, Duration.ofMinutes(15), Duration.ofHours(24));
+        scheduler.addListener(fired::add);
+    }
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.stop();
+        for (int id : created) dao.delete(id);
+    }
+
+    @Test
+    void firesFifteenMinutesBefore() {
+        Compromisso c = insert(T0.plusHours(1), null);
+        scheduler.start();
+
+        at(T0.plusMinutes(44));
+        assertTrue(fired.isEmpty());
+        at(T0.plusMinutes(45));
+        assertEquals(List.of(c.getId()), firedIds());
+        at(T0.plusMinutes(50));
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    void editedCompromissoFiresOnlyAtTheNewTime() {
+        scheduler.start();
+        Compromisso c = insert(T0.plusHours(2), null);
+        c.setDateTime(T0.plusHours(3));
+        assertTrue(dao.update(c));
+
+        // the entry queued for the old time is stale
+        at(T0.plusHours(2).minusMinutes(15));
+        assertTrue(fired.isEmpty());
+        // the entry for the new time still needs the id's generation
+        assertEquals(1, scheduler.generationCount());
+        at(T0.plusHours(3).minusMinutes(15));
+        assertEquals(List.of(c.getId()), firedIds());
+        assertEquals(T0.plusHours(3), fired.get(0).getDateTime());
+        // both entries drained: nothing is kept for the id
+        assertEquals(0, scheduler.generationCount());
+    }
+
+    @Test
+    void deletedOccurrenceDoesNotFire() {
+        scheduler.start();
+        Compromisso series = insert(T0.plusHours(4), new Recorrencia(Recorrencia.Frequencia.DIARIA, 1, 3, null));
+        Compromisso single = insert(T0.plusHours(5), null);
+        // cancel only today's occurrence of the series, and delete the single one
+        assertTrue(dao.addExcecao(series.getId(), T0.plusHours(4)));
+        assertTrue(dao.delete(single.getId()));
+        created.remove(single.getId());
+
+        at(T0.plusHours(6));
+        assertTrue(fired.isEmpty());
+        at(T0.plusDays(1).plusHours(4).minusMinutes(15));
+        assertEquals(List.of(series.getId()), firedIds());
+        assertEquals(T0.plusDays(1).plusHours(4), fired.get(0).getDateTime());
+    }
+
+    @Test
+    void seriesDoesNotFireTwiceAfterReload() {
+        Compromisso series = insert(T0.plusHours(6), new Recorrencia(Recorrencia.Frequencia.DIARIA, 1, 2, null));
+        scheduler.start();
+
+        at(T0.plusHours(6).minusMinutes(15));
+        assertEquals(1, fired.size());
+
+        // a batch insert publishes RESET: the queue is rebuilt from the database
+        clock.set(T0.plusHours(6).minusMinutes(10));
+        Compromisso far = new Compromisso(1, T0.plusYears(50), "Sala", false, "recarga");
+        assertEquals(1, dao.insertBatched(List.of(far).iterator(), 10));
+        created.add(far.getId());
+        at(T0.plusHours(6).minusMinutes(5));
+        assertEquals(1, fired.size());
+
+        at(T0.plusDays(1).plusHours(6).minusMinutes(15));
+        assertEquals(2, fired.size());
+        assertEquals(T0.plusDays(1).plusHours(6), fired.get(1).getDateTime());
+    }
+
+    private void at(LocalDateTime t) {
+        clock.set(t);
+        scheduler.fireDue();
+    }
+
+    private List<Integer> firedIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (Compromisso c : fired) ids.add(c.getId());
+        return ids;
+    }
+
+    private Compromisso insert(LocalDateTime when, Recorrencia rule) {
+        Compromisso c = new Compromisso(1, when, "Sala " + created.size(), false, "lembrete");
+        assertTrue(dao.insert(c, rule));
+        created.add(c.getId());
+        return c;
+    }
+}